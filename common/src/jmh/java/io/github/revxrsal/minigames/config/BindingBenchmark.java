@@ -0,0 +1,95 @@
+package io.github.revxrsal.minigames.config;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.reflect.TypeToken;
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.reflect.Type;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares binding configuration values through {@link ObjectReader} and {@link ObjectWriter}
+ * with the JSON tree round-trip that {@link MappedConfiguration} used before, which converted
+ * values with {@link Gson#toJsonTree(Object)} and then deserialized the tree.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class BindingBenchmark {
+
+    private static final Type MAP_TYPE = new TypeToken<Map<String, Object>>() {
+    }.getType();
+
+    /**
+     * The number of arenas in the bound value
+     */
+    @Param({"1", "32"})
+    public int arenas;
+
+    private Gson gson;
+    private Settings settings;
+    private Object content;
+
+    @Setup public void setup() {
+        gson = new GsonBuilder()
+                .registerTypeAdapterFactory(MappedConfiguration.MapPairsTypeAdapterFactory.INSTANCE)
+                .registerTypeAdapterFactory(MappedConfiguration.SectionTypeAdapterFactory.INSTANCE)
+                .registerTypeAdapterFactory(MappedConfiguration.StandardSerializableTypeAdapterFactory.INSTANCE)
+                .create();
+        settings = new Settings();
+        for (int i = 0; i < arenas; i++)
+            settings.arenas.put("arena-" + i, new Arena(i));
+        content = writeObjectWriter();
+        if (!gson.toJsonTree(readObjectReader()).equals(gson.toJsonTree(readJsonTree())))
+            throw new IllegalStateException("Both paths must bind the same value");
+    }
+
+    @Benchmark public Settings readObjectReader() {
+        return gson.fromJson(new ObjectReader(gson, content), Settings.class);
+    }
+
+    @Benchmark public Settings readJsonTree() {
+        return gson.fromJson(gson.toJsonTree(content), Settings.class);
+    }
+
+    @Benchmark public Object writeObjectWriter() {
+        ObjectWriter writer = new ObjectWriter();
+        gson.toJson(settings, Settings.class, writer);
+        return writer.get();
+    }
+
+    @Benchmark public Object writeJsonTree() {
+        return gson.fromJson(gson.toJsonTree(settings), MAP_TYPE);
+    }
+
+    public static class Settings {
+
+        private String prefix = "&7[&bMinigames&7] ";
+        private boolean bungee = false;
+        private int countdown = 30;
+        private List<String> disabledCommands = Arrays.asList("spawn", "home", "tpa", "warp");
+        private Map<String, Arena> arenas = new LinkedHashMap<>();
+    }
+
+    public static class Arena {
+
+        private String name;
+        private String world = "world";
+        private int minPlayers = 2;
+        private int maxPlayers = 12;
+        private double[] lobby = {12.5, 64, -30.5};
+        private List<String> rewards = Arrays.asList("give %player% diamond 1", "eco give %player% 100");
+        private Map<String, Integer> kits = new LinkedHashMap<>();
+
+        Arena() {
+        }
+
+        Arena(int id) {
+            name = "Arena " + id;
+            kits.put("archer", id);
+            kits.put("warrior", id + 1);
+        }
+    }
+}
@@ -0,0 +1,237 @@
+package io.github.revxrsal.minigames.event;
+
+import org.bukkit.Server;
+import org.bukkit.command.SimpleCommandMap;
+import org.bukkit.event.Event;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.HandlerList;
+import org.bukkit.event.Listener;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.plugin.PluginDescriptionFile;
+import org.bukkit.plugin.SimplePluginManager;
+import org.bukkit.plugin.java.JavaPlugin;
+import org.bukkit.plugin.java.JavaPluginLoader;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.lang.reflect.Array;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+
+/**
+ * Compares posting a scoped event through {@link EventBus} with firing the same event through
+ * Bukkit's {@link SimplePluginManager#callEvent(Event)}, and with invoking the subscriber methods
+ * through {@link Method#invoke}.
+ * <p>
+ * There are two arenas, each with the same number of subscribers, and events are posted in one
+ * of them. Bukkit cannot scope listeners, so every listener checks the arena itself, as plugins
+ * do. All paths run the same listener methods.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class EventBusBenchmark {
+
+    private static final List<Supplier<ArenaListener>> TYPES = Arrays.asList(
+            Listener1::new, Listener2::new, Listener3::new, Listener4::new,
+            Listener5::new, Listener6::new, Listener7::new, Listener8::new
+    );
+
+    /**
+     * The number of subscribers in each arena
+     */
+    @Param({"1", "8"})
+    public int subscribers;
+
+    /**
+     * Whether subscribers are instances of different classes, or all of the same class
+     */
+    @Param({"true", "false"})
+    public boolean polymorphic;
+
+    private EventBus bus;
+    private SimplePluginManager pluginManager;
+    private ArenaListener[] listeners;
+    private Method[] methods;
+    private ArenaEvent event;
+
+    @Setup public void setup() throws NoSuchMethodException {
+        Object arena = new Object(), other = new Object();
+        bus = new EventBus();
+        Map<String, Object> server = new HashMap<>();
+        server.put("isPrimaryThread", true);
+        server.put("getLogger", Logger.getLogger("EventBusBenchmark"));
+        Server bukkit = stub(Server.class, server);
+        pluginManager = new SimplePluginManager(bukkit, new SimpleCommandMap(bukkit));
+        server.put("getPluginManager", pluginManager);
+        Plugin owner = new BenchmarkPlugin(new JavaPluginLoader(bukkit));
+
+        listeners = new ArenaListener[subscribers * 2];
+        methods = new Method[listeners.length];
+        for (int i = 0; i < listeners.length; i++) {
+            ArenaListener listener = TYPES.get(polymorphic ? i % TYPES.size() : 0).get();
+            listener.arena = i % 2 == 0 ? arena : other;
+            bus.register(listener.arena, listener);
+            pluginManager.registerEvents(listener, owner);
+            listeners[i] = listener;
+            methods[i] = listener.getClass().getMethod("onEvent", ArenaEvent.class);
+        }
+        HandlerList.bakeAll();
+        event = new ArenaEvent(arena);
+    }
+
+    @Benchmark public ArenaEvent compiled() {
+        return bus.post(event);
+    }
+
+    @Benchmark public ArenaEvent bukkit() {
+        pluginManager.callEvent(event);
+        return event;
+    }
+
+    @Benchmark public ArenaEvent reflective() throws Exception {
+        for (int i = 0; i < listeners.length; i++)
+            methods[i].invoke(listeners[i], event);
+        return event;
+    }
+
+    @TearDown public void check(Blackhole blackhole) {
+        for (ArenaListener listener : listeners)
+            blackhole.consume(listener.received);
+    }
+
+    /**
+     * A plugin that is enabled as soon as it is created. This uses the constructor Bukkit
+     * provides for plugins that are not loaded by a server.
+     */
+    public static class BenchmarkPlugin extends JavaPlugin {
+
+        @SuppressWarnings("deprecation")
+        BenchmarkPlugin(JavaPluginLoader loader) {
+            super(loader, new PluginDescriptionFile("EventBusBenchmark", "1.0", BenchmarkPlugin.class.getName()),
+                    new File("EventBusBenchmark"), new File("EventBusBenchmark.jar"));
+            setEnabled(true);
+        }
+    }
+
+    /**
+     * Creates an implementation of the specified interface that returns the specified answers
+     * by method name, and default values for anything else
+     */
+    private static <T> T stub(Class<T> type, Map<String, Object> answers) {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return type.getSimpleName();
+            }
+            Object answer = answers.get(method.getName());
+            if (answer != null || !method.getReturnType().isPrimitive() || method.getReturnType() == void.class)
+                return answer;
+            return Array.get(Array.newInstance(method.getReturnType(), 1), 0);
+        }));
+    }
+
+    public static class ArenaEvent extends Event implements Scoped {
+
+        private static final HandlerList HANDLERS = new HandlerList();
+
+        private final Object arena;
+        private int counter;
+
+        public ArenaEvent(Object arena) {
+            this.arena = arena;
+        }
+
+        @Override public Object getScope() {
+            return arena;
+        }
+
+        @Override public HandlerList getHandlers() {
+            return HANDLERS;
+        }
+
+        public static HandlerList getHandlerList() {
+            return HANDLERS;
+        }
+    }
+
+    public abstract static class ArenaListener implements Listener {
+
+        private Object arena;
+        private int received;
+
+        protected void handle(ArenaEvent event) {
+            if (event.arena != arena) return;
+            received++;
+            event.counter++;
+        }
+    }
+
+    public static class Listener1 extends ArenaListener {
+
+        @Subscribe @EventHandler public void onEvent(ArenaEvent event) {
+            handle(event);
+        }
+    }
+
+    public static class Listener2 extends ArenaListener {
+
+        @Subscribe @EventHandler public void onEvent(ArenaEvent event) {
+            handle(event);
+        }
+    }
+
+    public static class Listener3 extends ArenaListener {
+
+        @Subscribe @EventHandler public void onEvent(ArenaEvent event) {
+            handle(event);
+        }
+    }
+
+    public static class Listener4 extends ArenaListener {
+
+        @Subscribe @EventHandler public void onEvent(ArenaEvent event) {
+            handle(event);
+        }
+    }
+
+    public static class Listener5 extends ArenaListener {
+
+        @Subscribe @EventHandler public void onEvent(ArenaEvent event) {
+            handle(event);
+        }
+    }
+
+    public static class Listener6 extends ArenaListener {
+
+        @Subscribe @EventHandler public void onEvent(ArenaEvent event) {
+            handle(event);
+        }
+    }
+
+    public static class Listener7 extends ArenaListener {
+
+        @Subscribe @EventHandler public void onEvent(ArenaEvent event) {
+            handle(event);
+        }
+    }
+
+    public static class Listener8 extends ArenaListener {
+
+        @Subscribe @EventHandler public void onEvent(ArenaEvent event) {
+            handle(event);
+        }
+    }
+}
@@ -1,13 +1,21 @@
 package io.github.revxrsal.minigames;
 
 import com.google.gson.FieldNamingPolicy;
+import io.github.revxrsal.minigames.config.ConfigView;
 import io.github.revxrsal.minigames.config.MappedConfiguration;
+import io.github.revxrsal.minigames.delay.AsyncDelay;
+import io.github.revxrsal.minigames.event.EventBus;
 import io.github.revxrsal.minigames.menu.InventoryUI;
+import io.github.revxrsal.minigames.menu.SkullCache;
 import io.github.revxrsal.minigames.message.message.MessageManager;
 import io.github.revxrsal.minigames.pluginlib.DependentJavaPlugin;
 import io.github.revxrsal.minigames.pluginlib.PluginLib;
 import io.github.revxrsal.minigames.pluginlib.Relocation;
+import io.github.revxrsal.minigames.region.ChangeRecorder;
+import io.github.revxrsal.minigames.scheduler.MainThreadExecutor;
+import io.github.revxrsal.minigames.scheduler.TimingWheelScheduler;
 import io.github.revxrsal.minigames.util.FileManager;
+import io.github.revxrsal.minigames.util.FileWatcher;
 import io.github.revxrsal.minigames.util.Protocol;
 import lombok.SneakyThrows;
 import org.apache.commons.lang.StringUtils;
@@ -17,12 +25,9 @@ import org.bukkit.event.Listener;
 import org.bukkit.plugin.PluginDescriptionFile;
 import org.bukkit.plugin.java.JavaPlugin;
 import org.jetbrains.annotations.NotNull;
-import org.jetbrains.annotations.Nullable;
 
 import java.io.*;
 import java.lang.annotation.*;
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
 import java.net.URL;
 import java.net.URLConnection;
 import java.nio.channels.Channels;
@@ -31,6 +36,7 @@ import java.util.*;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Supplier;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import static io.github.revxrsal.minigames.util.Utils.firstNotNull;
@@ -45,16 +51,28 @@ public abstract class MinigamePlugin {
     private static final String DEF_SEPARATOR = new String(new char[]{'/'});
 
     public static final ExecutorService THREAD_POOL = new ForkJoinPool();
-    public static final ScheduledExecutorService SCHEDULED_SERVICE = Executors.newSingleThreadScheduledExecutor();
+    /**
+     * A scheduler that runs tasks on {@link #THREAD_POOL}. Delayed tasks fire on the first server
+     * tick (50ms) boundary after their delay elapses, so they may run up to a tick late. Tasks with
+     * no delay run immediately.
+     *
+     * @see TimingWheelScheduler
+     */
+    public static final ScheduledExecutorService SCHEDULED_SERVICE = new TimingWheelScheduler(THREAD_POOL, Math.max(1, Runtime.getRuntime().availableProcessors() / 2));
 
     protected final FileManager fileManager;
     protected static MessageManager messageManager;
     protected final JavaPlugin plugin;
     protected final MappedConfiguration configFile;
+    protected final EventBus eventBus = new EventBus();
+    protected final MainThreadExecutor mainThread;
+    protected final FileWatcher fileWatcher = new FileWatcher();
+    private PhasePlan phases;
 
     public MinigamePlugin(JavaPlugin plugin) {
         instance = this;
         this.plugin = plugin;
+        mainThread = new MainThreadExecutor(plugin);
         fileManager = new FileManager(this);
         configFile = MappedConfiguration
                 .fromEmbeddedFile(plugin, "config.yml")
@@ -64,17 +82,38 @@ public abstract class MinigamePlugin {
     }
 
     public final void onLoad() {
+        long start = System.nanoTime();
         call(PreLoad.class);
+        start = timing("@PreLoad", start);
         if (!DISABLE.get()) {
-            for (String file : directories()) {
+            List<String> directories = directories();
+            for (String file : directories) {
                 fileManager.directory(file.replace(DEF_SEPARATOR, separator));
             }
-            for (String file : bundledFiles()) {
-                fileManager.embedded(file.replace(DEF_SEPARATOR, separator));
-            }
+            start = timing("Creating " + directories.size() + " directories", start);
+            List<String> files = bundledFiles();
+            int written = fileManager.extractAll(files, updateBundledFiles());
+            start = timing("Extracting bundled files (" + written + "/" + files.size() + " written)", start);
         }
         messageManager = new MessageManager(this);
+        start = timing("Loading messages", start);
+        SkullCache.load(); // read in the background, so skulls never wait on disk IO
         call(InvokeLoad.class);
+        timing("@InvokeLoad", start);
+    }
+
+    /**
+     * Logs the time a startup stage took, at the {@link Level#FINE} level
+     *
+     * @param stage Name of the stage
+     * @param start Time the stage started at, in nanoseconds
+     * @return The current time, to be used as the start of the next stage
+     */
+    private long timing(String stage, long start) {
+        long now = System.nanoTime();
+        if (getLogger().isLoggable(Level.FINE))
+            getLogger().fine(stage + " took " + TimeUnit.NANOSECONDS.toMillis(now - start) + "ms");
+        return now;
     }
 
     @SneakyThrows
@@ -106,47 +145,10 @@ public abstract class MinigamePlugin {
      *
      * @param annotation Annotation to filter with
      */
-    @SneakyThrows
     private void call(Class<? extends Annotation> annotation) {
-        Method priorityMethod = annotation.getDeclaredMethod("value");
-        List<Method> methods = new ArrayList<>();
-        for (Method method : plugin.getClass().getDeclaredMethods()) {
-            Annotation ann = method.getAnnotation(annotation);
-            if (ann == null) continue;
-            if (method.isAnnotationPresent(annotation)) {
-                methods.add(method);
-            }
-        }
-        methods.sort(Comparator.comparingInt(o -> {
-            try {
-                return (int) priorityMethod.invoke(o.getAnnotation(annotation));
-            } catch (IllegalAccessException | IllegalArgumentException | InvocationTargetException e) {
-                return 0;
-            }
-        }));
-        for (Method method : methods) {
-            @Nullable RunAsync async = method.getAnnotation(RunAsync.class);
-            if (!method.isAccessible()) method.setAccessible(true);
-            if (async == null)
-                try {
-                    method.invoke(plugin);
-                } catch (InvocationTargetException | IllegalAccessException e) {
-                    error("Failed to run callback method " + method.getName() + " in stage @" + annotation.getSimpleName());
-                    e.getCause().printStackTrace();
-                }
-            else {
-                SCHEDULED_SERVICE.schedule(() -> {
-                    try {
-                        method.invoke(plugin);
-                    } catch (IllegalAccessException e) {
-                        e.printStackTrace();
-                    } catch (InvocationTargetException e) {
-                        warn("Failed to invoke method " + method.getName() + " asynchronously:");
-                        (e.getCause() == null ? e : e.getCause()).printStackTrace();
-                    }
-                }, async.delay(), TimeUnit.MILLISECONDS);
-            }
-        }
+        if (phases == null)
+            phases = PhasePlan.scan(plugin);
+        phases.run(this, annotation);
     }
 
     public final void onEnable() {
@@ -184,10 +186,18 @@ public abstract class MinigamePlugin {
                 return;
             }
             addListener(new InventoryUI.MenuListener());
+            addListener(new AsyncDelay.QuitListener());
+            addListener(new ChangeRecorder.RecordingListener());
+            if (Protocol.isModern())
+                addListener(new ChangeRecorder.SpongeListener());
             call(InvokeEnable.class);
             for (Object listener : listeners()) {
                 addListener(listener);
             }
+            if (watchFiles()) {
+                configFile.watch(fileWatcher);
+                fileWatcher.watch(messageManager.getFile(), messageManager::reloadAsync);
+            }
         } catch (Exception e) {
             try (StringWriter sw = new StringWriter(); PrintWriter pw = new PrintWriter(sw)) {
                 e.printStackTrace(pw);
@@ -208,6 +218,9 @@ public abstract class MinigamePlugin {
     public final void onDisable() {
         if (DISABLE.get()) return;
         call(InvokeDisable.class);
+        fileWatcher.close();
+        MappedConfiguration.flushAll();
+        SkullCache.save();
     }
 
     protected YamlConfiguration loadFile(String name) {
@@ -267,6 +280,32 @@ public abstract class MinigamePlugin {
         return true;
     }
 
+    /**
+     * Whether bundled files that already exist should be replaced when the plugin bundles a
+     * newer version. Files that were modified on disk are never replaced.
+     *
+     * @return True to update unmodified bundled files
+     * @see FileManager#extractAll(Collection, boolean)
+     */
+    protected boolean updateBundledFiles() {
+        return false;
+    }
+
+    /**
+     * Whether config.yml and messages.yml should be reloaded automatically when they are
+     * edited. Other files, such as arena files, can be watched with {@link #getFileWatcher()}.
+     * <p>
+     * config.yml is reloaded on a {@link #THREAD_POOL} thread, so the {@link ConfigView}
+     * listeners and change listeners of the config are invoked on that thread too, and must
+     * not use the Bukkit API without switching to the main thread. Messages are parsed off
+     * the main thread and applied on it. Files that fail to parse are not applied.
+     *
+     * @return True to reload files when they change
+     */
+    protected boolean watchFiles() {
+        return true;
+    }
+
     public static MinigamePlugin getInstance() {
         return instance;
     }
@@ -379,6 +418,33 @@ public abstract class MinigamePlugin {
 
     }
 
+    /**
+     * Added to lifecycle methods to declare other methods in the same stage that must
+     * complete before this one runs
+     */
+    @Target(ElementType.METHOD)
+    @Retention(RetentionPolicy.RUNTIME)
+    public @interface DependsOn {
+
+        /**
+         * The names of the methods to wait for
+         *
+         * @return The method names
+         */
+        String[] value();
+
+    }
+
+    /**
+     * Added to lifecycle methods to indicate that they may run on the thread pool, concurrently
+     * with other methods of the same stage, once their {@link DependsOn dependencies} complete.
+     * The stage still waits for all of them to finish before it ends.
+     */
+    @Target(ElementType.METHOD)
+    @Retention(RetentionPolicy.RUNTIME)
+    public @interface Parallel {
+    }
+
     /**
      * Repeatable store for {@link DownloadPlugin}
      */
@@ -402,6 +468,18 @@ public abstract class MinigamePlugin {
         return configFile;
     }
 
+    public EventBus getEventBus() {
+        return eventBus;
+    }
+
+    public MainThreadExecutor getMainThread() {
+        return mainThread;
+    }
+
+    public FileWatcher getFileWatcher() {
+        return fileWatcher;
+    }
+
     public static void load(@NotNull Class<? extends DependentJavaPlugin> type) {
         PluginLib.builder()
                 .groupId("com.google.code.gson")
@@ -0,0 +1,194 @@
+package io.github.revxrsal.minigames;
+
+import io.github.revxrsal.minigames.MinigamePlugin.*;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.lang.annotation.Annotation;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static java.lang.invoke.MethodType.methodType;
+
+/**
+ * A precompiled plan of the lifecycle methods of a plugin.
+ * <p>
+ * The plugin class is scanned once, and the methods of each phase are sorted by their
+ * priority and {@link DependsOn dependencies}, and compiled into {@link MethodHandle}s. Methods
+ * marked with {@link Parallel} are run on {@link MinigamePlugin#THREAD_POOL} as soon as their
+ * dependencies complete, while the rest run on the calling thread in order.
+ */
+final class PhasePlan {
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+    private final Map<Class<? extends Annotation>, PhaseMethod[]> phases;
+
+    private PhasePlan(Map<Class<? extends Annotation>, PhaseMethod[]> phases) {
+        this.phases = phases;
+    }
+
+    /**
+     * Runs all methods of the specified phase, and waits for all parallel methods to complete.
+     *
+     * @param plugin The minigame plugin, used for logging
+     * @param phase  Phase to run
+     */
+    void run(@NotNull MinigamePlugin plugin, @NotNull Class<? extends Annotation> phase) {
+        PhaseMethod[] methods = phases.get(phase);
+        if (methods == null) return;
+        Map<PhaseMethod, CompletableFuture<Void>> futures = null;
+        for (PhaseMethod method : methods) {
+            if (method.async != null) {
+                MinigamePlugin.SCHEDULED_SERVICE.schedule(() -> method.invoke(plugin, phase, true), method.async.delay(), TimeUnit.MILLISECONDS);
+                continue;
+            }
+            if (!method.parallel && method.dependencies.length == 0 && futures == null) {
+                method.invoke(plugin, phase, false); // nothing was forked, run as usual
+                continue;
+            }
+            if (futures == null) futures = new HashMap<>();
+            CompletableFuture<Void> dependencies = dependencies(method, futures);
+            if (method.parallel) {
+                futures.put(method, dependencies.thenRunAsync(() -> method.invoke(plugin, phase, false), MinigamePlugin.THREAD_POOL));
+            } else {
+                dependencies.join();
+                method.invoke(plugin, phase, false);
+                futures.put(method, CompletableFuture.completedFuture(null));
+            }
+        }
+        if (futures != null)
+            CompletableFuture.allOf(futures.values().toArray(new CompletableFuture[0])).join();
+    }
+
+    private static CompletableFuture<Void> dependencies(PhaseMethod method, Map<PhaseMethod, CompletableFuture<Void>> futures) {
+        if (method.dependencies.length == 0) return CompletableFuture.completedFuture(null);
+        CompletableFuture<?>[] deps = new CompletableFuture[method.dependencies.length];
+        for (int i = 0; i < deps.length; i++) {
+            CompletableFuture<Void> future = futures.get(method.dependencies[i]);
+            // dependencies that ran before anything was forked have already completed
+            deps[i] = future == null ? CompletableFuture.completedFuture(null) : future;
+        }
+        return CompletableFuture.allOf(deps);
+    }
+
+    /**
+     * Scans the specified plugin class and creates its plan
+     *
+     * @param plugin The plugin instance to bind methods to
+     * @return The created plan
+     */
+    static PhasePlan scan(@NotNull Object plugin) {
+        Map<Class<? extends Annotation>, List<PhaseMethod>> found = new HashMap<>();
+        for (Method method : plugin.getClass().getDeclaredMethods()) {
+            PreLoad preLoad = method.getAnnotation(PreLoad.class);
+            if (preLoad != null) add(found, PreLoad.class, plugin, method, preLoad.value());
+            InvokeLoad load = method.getAnnotation(InvokeLoad.class);
+            if (load != null) add(found, InvokeLoad.class, plugin, method, load.value());
+            InvokeEnable enable = method.getAnnotation(InvokeEnable.class);
+            if (enable != null) add(found, InvokeEnable.class, plugin, method, enable.value());
+            InvokeDisable disable = method.getAnnotation(InvokeDisable.class);
+            if (disable != null) add(found, InvokeDisable.class, plugin, method, disable.value());
+        }
+        Map<Class<? extends Annotation>, PhaseMethod[]> phases = new HashMap<>();
+        for (Map.Entry<Class<? extends Annotation>, List<PhaseMethod>> entry : found.entrySet())
+            phases.put(entry.getKey(), sort(entry.getKey(), entry.getValue()));
+        return new PhasePlan(phases);
+    }
+
+    private static void add(Map<Class<? extends Annotation>, List<PhaseMethod>> found,
+                            Class<? extends Annotation> phase,
+                            Object plugin,
+                            Method method,
+                            int priority) {
+        if (method.getParameterCount() != 0)
+            throw new IllegalStateException("Method " + method.getName() + " in stage @" + phase.getSimpleName() + " must not take any parameters!");
+        found.computeIfAbsent(phase, k -> new ArrayList<>()).add(new PhaseMethod(plugin, method, priority));
+    }
+
+    /**
+     * Sorts the methods of a phase topologically by their dependencies, breaking ties by priority.
+     */
+    private static PhaseMethod[] sort(Class<? extends Annotation> phase, List<PhaseMethod> methods) {
+        methods.sort(Comparator.comparingInt(m -> m.priority));
+        Map<String, PhaseMethod> byName = new HashMap<>();
+        for (PhaseMethod method : methods)
+            byName.put(method.name, method);
+        for (PhaseMethod method : methods) {
+            String[] names = method.dependencyNames;
+            method.dependencies = new PhaseMethod[names.length];
+            for (int i = 0; i < names.length; i++) {
+                PhaseMethod dependency = byName.get(names[i]);
+                if (dependency == null)
+                    throw new IllegalStateException("Method " + method.name + " depends on " + names[i] + ", which is not in stage @" + phase.getSimpleName());
+                if (dependency.async != null)
+                    throw new IllegalStateException("Method " + method.name + " cannot depend on " + names[i] + " because it is @RunAsync");
+                method.dependencies[i] = dependency;
+            }
+        }
+        List<PhaseMethod> sorted = new ArrayList<>(methods.size());
+        Set<PhaseMethod> visiting = new HashSet<>();
+        Set<PhaseMethod> visited = new HashSet<>();
+        for (PhaseMethod method : methods)
+            visit(phase, method, visiting, visited, sorted);
+        return sorted.toArray(new PhaseMethod[0]);
+    }
+
+    private static void visit(Class<? extends Annotation> phase, PhaseMethod method, Set<PhaseMethod> visiting, Set<PhaseMethod> visited, List<PhaseMethod> sorted) {
+        if (visited.contains(method)) return;
+        if (!visiting.add(method))
+            throw new IllegalStateException("Circular dependency on method " + method.name + " in stage @" + phase.getSimpleName());
+        for (PhaseMethod dependency : method.dependencies)
+            visit(phase, dependency, visiting, visited, sorted);
+        visiting.remove(method);
+        visited.add(method);
+        sorted.add(method);
+    }
+
+    private static final class PhaseMethod {
+
+        private final String name;
+        private final int priority;
+        private final MethodHandle handle;
+        private final boolean parallel;
+        private final String[] dependencyNames;
+        @Nullable private final RunAsync async;
+        private PhaseMethod[] dependencies;
+
+        PhaseMethod(Object plugin, Method method, int priority) {
+            name = method.getName();
+            this.priority = priority;
+            parallel = method.isAnnotationPresent(Parallel.class);
+            async = method.getAnnotation(RunAsync.class);
+            DependsOn dependsOn = method.getAnnotation(DependsOn.class);
+            dependencyNames = dependsOn == null ? new String[0] : dependsOn.value();
+            try {
+                method.setAccessible(true);
+                MethodHandle handle = LOOKUP.unreflect(method);
+                if (!Modifier.isStatic(method.getModifiers()))
+                    handle = handle.bindTo(plugin);
+                this.handle = handle.asType(methodType(void.class));
+            } catch (IllegalAccessException e) {
+                throw new IllegalStateException("Cannot access method " + name, e);
+            }
+        }
+
+        void invoke(MinigamePlugin plugin, Class<? extends Annotation> phase, boolean async) {
+            try {
+                handle.invokeExact();
+            } catch (Throwable t) {
+                if (async)
+                    plugin.warn("Failed to invoke method " + name + " asynchronously:");
+                else
+                    plugin.error("Failed to run callback method " + name + " in stage @" + phase.getSimpleName());
+                t.printStackTrace();
+            }
+        }
+    }
+
+}
@@ -0,0 +1,105 @@
+package io.github.revxrsal.minigames.config;
+
+import io.github.revxrsal.minigames.config.MappedConfiguration.Snapshot;
+import org.jetbrains.annotations.NotNull;
+
+import java.lang.reflect.Type;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * A typed view of a value in a {@link MappedConfiguration}.
+ * <p>
+ * The value is converted once and cached until the configuration is reloaded or modified.
+ * Reading the value does not lock, and is safe from any thread: the value is always converted
+ * from a single version of the configuration, even while it is being reloaded on another thread.
+ * <p>
+ * Instances are created with {@link MappedConfiguration#view(String, Type)}.
+ *
+ * @param <T> The value type
+ */
+public final class ConfigView<T> {
+
+    private final MappedConfiguration config;
+    private final String path;
+    private final Type type;
+    private final List<Consumer<? super T>> listeners = new CopyOnWriteArrayList<>();
+    private volatile Bound<T> bound;
+
+    ConfigView(MappedConfiguration config, String path, Type type) {
+        this.config = config;
+        this.path = path;
+        this.type = type;
+    }
+
+    /**
+     * Returns the value of this view, converting it only if the configuration changed since
+     * it was last converted. The value is shared, so it should not be modified.
+     *
+     * @return The value, or null if nothing is found.
+     */
+    public T get() {
+        Snapshot snapshot = config.snapshot();
+        Bound<T> bound = this.bound;
+        if (bound != null && bound.snapshot == snapshot)
+            return bound.value;
+        T value = config.bind(snapshot, path, type);
+        this.bound = new Bound<>(snapshot, value);
+        return value;
+    }
+
+    /**
+     * Adds a listener that is invoked with the new value whenever the path of this view, or
+     * anything in it, changes. Listeners are invoked on the thread that changed the configuration,
+     * which for automatic reloads of watched files is a {@link io.github.revxrsal.minigames.MinigamePlugin#THREAD_POOL}
+     * thread.
+     *
+     * @param listener Listener to add
+     * @return This view instance.
+     */
+    public ConfigView<T> onChange(@NotNull Consumer<? super T> listener) {
+        listeners.add(MappedConfiguration.Builder.n(listener, "listener is null!"));
+        return this;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    boolean isAffectedBy(Set<String> paths, char separator) {
+        if (listeners.isEmpty()) return false;
+        for (String changed : paths) {
+            if (changed.isEmpty() || path.isEmpty() || changed.equals(path)
+                    || changed.startsWith(path + separator) || path.startsWith(changed + separator))
+                return true;
+        }
+        return false;
+    }
+
+    void changed() {
+        T value = get();
+        for (Consumer<? super T> listener : listeners)
+            listener.accept(value);
+    }
+
+    @Override public String toString() {
+        return "ConfigView{path='" + path + "', type=" + type.getTypeName() + "}";
+    }
+
+    private static final class Bound<T> {
+
+        private final Snapshot snapshot;
+        private final T value;
+
+        Bound(Snapshot snapshot, T value) {
+            this.snapshot = snapshot;
+            this.value = value;
+        }
+    }
+}
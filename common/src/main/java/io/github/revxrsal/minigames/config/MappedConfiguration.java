@@ -1,5 +1,7 @@
 package io.github.revxrsal.minigames.config;
 
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.google.gson.TypeAdapter;
@@ -8,25 +10,39 @@ import com.google.gson.internal.Primitives;
 import com.google.gson.reflect.TypeToken;
 import com.google.gson.stream.JsonReader;
 import com.google.gson.stream.JsonWriter;
+import io.github.revxrsal.minigames.MinigamePlugin;
 import io.github.revxrsal.minigames.gson.CaseInsensitiveEnumTypeAdapterFactory;
+import io.github.revxrsal.minigames.util.FileWatcher;
+import org.bukkit.configuration.Configuration;
 import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.InvalidConfigurationException;
 import org.bukkit.configuration.MemorySection;
 import org.bukkit.configuration.file.YamlConfiguration;
 import org.bukkit.configuration.serialization.ConfigurationSerializable;
 import org.bukkit.configuration.serialization.ConfigurationSerialization;
 import org.bukkit.plugin.java.JavaPlugin;
+import org.jetbrains.annotations.NotNull;
 
 import java.io.File;
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
 import java.lang.reflect.Field;
 import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.*;
 import java.util.Map.Entry;
 import java.util.function.Consumer;
 
 import static io.github.revxrsal.minigames.config.MappedConfiguration.Builder.n;
 import static io.github.revxrsal.minigames.config.MappedConfiguration.SectionTypeAdapterFactory.mapType;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
 import static java.util.Objects.requireNonNull;
 
 /**
@@ -36,34 +52,182 @@ import static java.util.Objects.requireNonNull;
  */
 public class MappedConfiguration {
 
+    /**
+     * Configurations that have a save pending, or being written
+     */
+    private static final Set<MappedConfiguration> SAVING = ConcurrentHashMap.newKeySet();
+
     private final Gson gson;
-    private YamlConfiguration config;
+    private volatile Snapshot snapshot;
     private final File file;
+    private final long saveDelay;
+    private final Map<List<Object>, ConfigView<?>> views = new ConcurrentHashMap<>();
+    private final List<ChangeListener> listeners = new CopyOnWriteArrayList<>();
 
-    private MappedConfiguration(Gson gson, YamlConfiguration config, File file) {
+    private final Object saveLock = new Object(), writeLock = new Object();
+    private CompletableFuture<Void> pendingSave; // guarded by saveLock
+    private ScheduledFuture<?> scheduledSave; // guarded by saveLock
+    private volatile HashCode written; // of the content last saved, while the file still holds it
+
+    private MappedConfiguration(Gson gson, YamlConfiguration config, File file, long saveDelay) {
         this.gson = n(gson, "gson is null!");
-        this.config = n(config, "config is null!");
+        this.snapshot = new Snapshot(n(config, "config is null!"));
         this.file = n(file, "file is null!");
+        this.saveDelay = saveDelay;
     }
 
     /**
-     * Reloads this configuration.
+     * Reloads this configuration. The reloaded content replaces the current one at once, so
+     * {@link ConfigView views} read on other threads see either the old or the new content.
+     * Change listeners are then notified of the paths that changed, on the current thread.
+     * <p>
+     * If the file cannot be read or parsed, a warning is logged and the current content is kept.
      *
      * @return This {@link MappedConfiguration} instance
      */
     public MappedConfiguration reload() {
-        config = YamlConfiguration.loadConfiguration(file);
+        reload(false);
         return this;
     }
 
     /**
-     * Saves this configuration file
+     * Reloads this configuration whenever its file is edited outside the plugin. Saving this
+     * configuration changes the file too, but does not reload it, so changes made after the
+     * save are kept. Reloads run on {@link MinigamePlugin#THREAD_POOL}, and so do the change
+     * listeners they notify.
+     *
+     * @param watcher Watcher to watch the file with
+     * @throws IOException If the directory of the file cannot be watched
+     */
+    public void watch(@NotNull FileWatcher watcher) throws IOException {
+        watcher.watch(file, () -> reload(true));
+    }
+
+    private void reload(boolean edited) {
+        YamlConfiguration config = copyOptions(snapshot.config);
+        try {
+            byte[] data = Files.readAllBytes(file.toPath());
+            if (!Hashing.murmur3_128().hashBytes(data).equals(written))
+                written = null; // edited since, so the same content is not ours anymore if it comes back
+            else if (edited)
+                return; // our own save
+            config.loadFromString(new String(data, StandardCharsets.UTF_8));
+        } catch (IOException | InvalidConfigurationException e) {
+            MinigamePlugin.getInstance().warn("Failed to reload " + file.getName() + ", keeping the current content:");
+            e.printStackTrace();
+            return;
+        }
+        YamlConfiguration old;
+        synchronized (this) {
+            old = snapshot.config;
+            snapshot = new Snapshot(config);
+        }
+        changed(diff(old, config));
+    }
+
+    /**
+     * Saves this configuration file immediately. A pending {@link #saveAsync() asynchronous save}
+     * is written along with it.
      *
      * @throws IOException Thrown when the given file cannot be written to for
      *                     any reason.
      */
     public void save() throws IOException {
-        config.save(file);
+        flush(true);
+    }
+
+    /**
+     * Marks this configuration as modified, and saves it once the save delay of the builder
+     * elapses. Saves requested within the delay are coalesced into a single write.
+     * <p>
+     * The content at the time the save happens is serialized and written off the calling
+     * thread. The file is replaced atomically, so it is never left half-written.
+     *
+     * @return A future that completes once the content at the time of this call is written
+     * @see Builder#saveDelay(long, TimeUnit)
+     */
+    public CompletableFuture<Void> saveAsync() {
+        synchronized (saveLock) {
+            if (pendingSave == null) {
+                pendingSave = new CompletableFuture<>();
+                SAVING.add(this);
+                scheduledSave = MinigamePlugin.SCHEDULED_SERVICE.schedule(() -> {
+                    try {
+                        flush(false);
+                    } catch (IOException e) {
+                        e.printStackTrace();
+                    }
+                }, saveDelay, TimeUnit.NANOSECONDS);
+            }
+            return pendingSave;
+        }
+    }
+
+    /**
+     * Writes a pending {@link #saveAsync() asynchronous save} immediately, and waits for a save
+     * that is already being written to finish.
+     *
+     * @throws IOException Thrown when the given file cannot be written to for
+     *                     any reason.
+     */
+    public void flush() throws IOException {
+        flush(false);
+    }
+
+    /**
+     * Writes the pending saves of all configurations immediately. This is invoked when the
+     * plugin is disabled, so no saves are lost.
+     */
+    public static void flushAll() {
+        for (MappedConfiguration config : SAVING) {
+            try {
+                config.flush();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private void flush(boolean force) throws IOException {
+        synchronized (writeLock) {
+            CompletableFuture<Void> future;
+            synchronized (saveLock) {
+                future = pendingSave;
+                pendingSave = null;
+                if (future != null) scheduledSave.cancel(false);
+            }
+            try {
+                if (future == null && !force) return;
+                write();
+                if (future != null) future.complete(null);
+            } catch (IOException | RuntimeException e) {
+                if (future != null) future.completeExceptionally(e);
+                throw e;
+            } finally {
+                synchronized (saveLock) {
+                    if (pendingSave == null) SAVING.remove(this);
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes the current snapshot to a temporary file, which then replaces the configuration
+     * file. Snapshots are never modified, so this does not block modifications.
+     */
+    private void write() throws IOException {
+        byte[] data = snapshot.config.saveToString().getBytes(StandardCharsets.UTF_8);
+        written = Hashing.murmur3_128().hashBytes(data); // before the move, which a watcher may see at once
+        Path path = file.toPath();
+        Path temp = path.resolveSibling(file.getName() + ".tmp");
+        if (file.getParentFile() != null)
+            Files.createDirectories(file.getParentFile().toPath());
+        Files.write(temp, data);
+        try {
+            Files.move(temp, path, REPLACE_EXISTING, ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, path, REPLACE_EXISTING);
+        }
     }
 
     /**
@@ -75,7 +239,7 @@ public class MappedConfiguration {
      * @return The read value, or null if nothing is found.
      */
     public <T> T get(String path, Type type) {
-        return gson.fromJson(gson.toJsonTree(config.get(path)), type);
+        return bind(snapshot.config.get(path), type);
     }
 
     /**
@@ -86,28 +250,160 @@ public class MappedConfiguration {
      * @return The read value
      */
     public <T> T getContent(Type type) {
-        return gson.fromJson(gson.toJsonTree(getMap(config)), type);
+        return bind(values(snapshot.config), type);
     }
 
     /**
      * Sets the content of this configuration as the specified object.
      */
     public void setContent(Object value) {
-        setMap(config, gson.fromJson(gson.toJsonTree(value), mapType.getType()));
+        Object content = unbind(value);
+        if (!(content instanceof Map))
+            throw new IllegalArgumentException("Content must be an object, found " + value);
+        synchronized (this) {
+            YamlConfiguration next = copyOptions(snapshot.config);
+            setMap(next, (Map<String, Object>) content);
+            snapshot = new Snapshot(next);
+        }
+        changed(Collections.singleton(""));
     }
 
     /**
      * Sets the data at the specified path to the desired object.
+     * <p>
+     * Published content is never modified, so each call copies the whole configuration, and
+     * costs as much as the file is large. To change many values at once, use
+     * {@link #update(Consumer)}, which copies it only once.
      *
      * @param path  Path to set in
      * @param value Value to set. Can be null.
      */
     public void set(String path, Object value) {
-        config.set(path, convert(value));
+        Object converted = convert(value);
+        synchronized (this) {
+            YamlConfiguration next = copy(snapshot.config); // published snapshots are never modified
+            next.set(path, converted);
+            snapshot = new Snapshot(next);
+        }
+        changed(Collections.singleton(path));
+    }
+
+    /**
+     * Applies several changes at once. The specified function modifies a copy of the content,
+     * which then replaces the current one, so the configuration is copied once however many
+     * values change, and other threads never see only some of the changes. Change listeners
+     * are then notified of the paths that changed.
+     * <p>
+     * Values are stored as they are, so they must be ones a {@link YamlConfiguration} can hold,
+     * such as scalars, lists and {@link ConfigurationSerializable}s. Other objects should be set
+     * with {@link #set(String, Object)}, which converts them. The function must not modify this
+     * configuration by any other means.
+     *
+     * @param changes Function that modifies the content
+     */
+    public void update(@NotNull Consumer<ConfigurationSection> changes) {
+        n(changes, "changes is null!");
+        YamlConfiguration old, next;
+        synchronized (this) {
+            old = snapshot.config;
+            next = copy(old);
+            changes.accept(next);
+            snapshot = new Snapshot(next);
+        }
+        changed(diff(old, next));
+    }
+
+    /**
+     * Returns a view of the object in the specified path, converted to the specified type.
+     * The view converts the object once, and converts it again only after the configuration
+     * changes. Views are shared, so this returns the same view for the same path and type.
+     *
+     * @param path Path of the data value, or an empty string for the whole configuration
+     * @param type Type to deserialize to
+     * @param <T>  The required type
+     * @return The view
+     */
+    @SuppressWarnings("unchecked")
+    public <T> ConfigView<T> view(String path, Type type) {
+        n(path, "path is null!");
+        n(type, "type is null!");
+        return (ConfigView<T>) views.computeIfAbsent(Arrays.asList(path, type), k -> new ConfigView<>(this, path, type));
+    }
+
+    /**
+     * Returns a view of the object in the specified path, converted to the specified type.
+     *
+     * @param path Path of the data value, or an empty string for the whole configuration
+     * @param type Type to deserialize to
+     * @param <T>  The required type
+     * @return The view
+     * @see #view(String, Type)
+     */
+    public <T> ConfigView<T> view(String path, Class<T> type) {
+        return view(path, (Type) type);
+    }
+
+    /**
+     * Adds a listener that is notified of the paths that change when this configuration is
+     * reloaded or modified.
+     *
+     * @param listener Listener to add
+     */
+    public void addChangeListener(ChangeListener listener) {
+        listeners.add(n(listener, "listener is null!"));
+    }
+
+    public void removeChangeListener(ChangeListener listener) {
+        listeners.remove(listener);
+    }
+
+    private void changed(Set<String> paths) {
+        if (paths.isEmpty()) return;
+        for (ChangeListener listener : listeners)
+            listener.onChange(paths);
+        char separator = snapshot.config.options().pathSeparator();
+        for (ConfigView<?> view : views.values())
+            if (view.isAffectedBy(paths, separator))
+                view.changed();
+    }
+
+    /**
+     * Returns the paths of all values that differ between the specified configurations. Of a
+     * section that was added or removed, only the path of the section itself is returned.
+     */
+    private static Set<String> diff(Configuration old, Configuration now) {
+        Set<String> changed = new LinkedHashSet<>();
+        diff("", now.options().pathSeparator(), values(old), values(now), changed);
+        return Collections.unmodifiableSet(changed);
+    }
+
+    private static void diff(String prefix, char separator, Map<String, Object> a, Map<String, Object> b, Set<String> changed) {
+        for (Entry<String, Object> e : a.entrySet()) {
+            String path = prefix + e.getKey();
+            Object old = e.getValue(), now = b.get(e.getKey());
+            if (old instanceof ConfigurationSection && now instanceof ConfigurationSection)
+                diff(path + separator, separator, values((ConfigurationSection) old), values((ConfigurationSection) now), changed);
+            else if (!Objects.equals(old, now))
+                changed.add(path);
+        }
+        for (String key : b.keySet())
+            if (!a.containsKey(key)) changed.add(prefix + key);
     }
 
     /**
-     * Saves this configuration and propagates any exceptions.
+     * Returns the current snapshot. A snapshot is replaced whenever the configuration changes,
+     * so views can tell if what they converted is still up to date.
+     */
+    Snapshot snapshot() {
+        return snapshot;
+    }
+
+    <T> T bind(Snapshot snapshot, String path, Type type) {
+        return bind(path.isEmpty() ? values(snapshot.config) : snapshot.config.get(path), type);
+    }
+
+    /**
+     * Saves this configuration immediately and prints any exceptions.
      */
     public void saveSilently() {
         try {
@@ -117,13 +413,20 @@ public class MappedConfiguration {
         }
     }
 
+    public File getFile() {
+        return file;
+    }
+
     /**
-     * Returns the inner configuration instance.
+     * Returns the inner configuration instance. This is the current content, which may be
+     * read on other threads at the same time, so it must not be modified: modifications are
+     * not thread-safe, and do not notify {@link ConfigView views} or change listeners. Use
+     * {@link #set(String, Object)} or {@link #setContent(Object)} instead.
      *
      * @return The configuration instance.
      */
     public YamlConfiguration getConfig() {
-        return config;
+        return snapshot.config;
     }
 
     /**
@@ -153,13 +456,44 @@ public class MappedConfiguration {
         return new Builder(file);
     }
 
+    /**
+     * A listener for changes in a configuration
+     */
+    @FunctionalInterface
+    public interface ChangeListener {
+
+        /**
+         * Invoked when values in the configuration change
+         *
+         * @param paths The paths that changed. An empty path means the whole configuration
+         *              was replaced.
+         */
+        void onChange(Set<String> paths);
+
+    }
+
+    /**
+     * A version of the content. Its configuration is never modified once published, and every
+     * change publishes a new snapshot instead, so it can be read from any thread.
+     */
+    static final class Snapshot {
+
+        private final YamlConfiguration config;
+
+        Snapshot(YamlConfiguration config) {
+            this.config = config;
+        }
+    }
+
     public static class Builder {
 
         private final GsonBuilder gson = new GsonBuilder()
+                .registerTypeAdapterFactory(MapPairsTypeAdapterFactory.INSTANCE)
                 .registerTypeAdapterFactory(SectionTypeAdapterFactory.INSTANCE)
                 .registerTypeAdapterFactory(StandardSerializableTypeAdapterFactory.INSTANCE);
 
         private File file;
+        private long saveDelay = TimeUnit.SECONDS.toNanos(1);
 
         private Builder(File file) {
             this.file = n(file, "file is null!");
@@ -176,6 +510,20 @@ public class MappedConfiguration {
             return this;
         }
 
+        /**
+         * Sets how long {@link MappedConfiguration#saveAsync()} waits before saving, during
+         * which further saves are coalesced. Defaults to 1 second.
+         *
+         * @param delay The save delay
+         * @param unit  The time unit
+         * @return This builder instance.
+         */
+        public Builder saveDelay(long delay, TimeUnit unit) {
+            if (delay < 0) throw new IllegalArgumentException("delay cannot be negative!");
+            saveDelay = n(unit, "unit is null!").toNanos(delay);
+            return this;
+        }
+
         /**
          * Applies actions to the internal GsonBuilder instance. Useful to apply certain settings
          * to the backing {@link GsonBuilder}.
@@ -209,7 +557,7 @@ public class MappedConfiguration {
          * @return The newly created configuration
          */
         public MappedConfiguration build() {
-            return new MappedConfiguration(gson.create(), YamlConfiguration.loadConfiguration(file), file);
+            return new MappedConfiguration(gson.create(), YamlConfiguration.loadConfiguration(file), file, saveDelay);
         }
 
         static <T> T n(T t, String err) {
@@ -233,8 +581,8 @@ public class MappedConfiguration {
             TypeAdapter<Map<String, Object>> delegate = gson.getDelegateAdapter(this, mapType);
             return new TypeAdapter<T>() {
                 @Override public void write(JsonWriter out, T t) throws IOException {
-                    ConfigurationSection section = (ConfigurationSection) t;
-                    delegate.write(out, toMap(section));
+                    // subsections are written by this adapter again, as the runtime type of the values
+                    delegate.write(out, values((ConfigurationSection) t));
                 }
 
                 @Override public T read(JsonReader in) throws IOException {
@@ -243,18 +591,31 @@ public class MappedConfiguration {
             };
         }
 
-        private static Map<String, Object> toMap(ConfigurationSection section) {
-            Map<String, Object> map = new LinkedHashMap<>();
-            for (Entry<String, Object> e : section.getValues(true).entrySet()) {
-                if (e.getKey().contains(".")) continue;
-                if (e.getValue() instanceof ConfigurationSection)
-                    map.put(e.getKey(), toMap((ConfigurationSection) e.getValue()));
-                else
-                    map.put(e.getKey(), e.getValue());
-            }
-            return map;
-        }
+    }
+
+    /**
+     * Lets Gson's map adapter read from an {@link ObjectReader}, by having the reader
+     * present maps as arrays of {@code [key, value]} pairs.
+     */
+    static class MapPairsTypeAdapterFactory implements TypeAdapterFactory {
 
+        static final MapPairsTypeAdapterFactory INSTANCE = new MapPairsTypeAdapterFactory();
+
+        @Override public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> typeToken) {
+            if (!Map.class.isAssignableFrom(typeToken.getRawType())) return null;
+            TypeAdapter<T> delegate = gson.getDelegateAdapter(this, typeToken);
+            return new TypeAdapter<T>() {
+                @Override public void write(JsonWriter out, T t) throws IOException {
+                    delegate.write(out, t);
+                }
+
+                @Override public T read(JsonReader in) throws IOException {
+                    if (in instanceof ObjectReader)
+                        ((ObjectReader) in).nextObjectAsPairs();
+                    return delegate.read(in);
+                }
+            };
+        }
     }
 
     static class StandardSerializableTypeAdapterFactory implements TypeAdapterFactory {
@@ -280,51 +641,135 @@ public class MappedConfiguration {
         }
     }
 
-    private static Field mapField;
+    /**
+     * A getter of {@code MemorySection.map}, which lets sections be read without copying them
+     */
+    private static final MethodHandle MAP;
 
     static {
+        MethodHandle map = null;
         try {
-            mapField = MemorySection.class.getDeclaredField("map");
-            mapField.setAccessible(true);
-        } catch (NoSuchFieldException e) {
+            Field field = MemorySection.class.getDeclaredField("map");
+            field.setAccessible(true);
+            map = MethodHandles.lookup().unreflectGetter(field);
+        } catch (ReflectiveOperationException e) {
             e.printStackTrace();
         }
+        MAP = map;
     }
 
+    @SuppressWarnings("unchecked")
     private static Map<String, Object> getMap(MemorySection section) {
         try {
-            return (Map<String, Object>) mapField.get(section);
-        } catch (IllegalAccessException e) {
-            throw new RuntimeException(e);
+            return (Map<String, Object>) MAP.invokeExact(section);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new RuntimeException(t);
         }
     }
 
+    /**
+     * Returns the values directly inside the specified section, where subsections are
+     * {@link ConfigurationSection}s. This is the backing map of the section whenever it
+     * holds the same values as {@link ConfigurationSection#getValues(boolean)}, so it is not
+     * copied, and must not be modified.
+     *
+     * @param section Section to read
+     * @return The values of the section
+     */
+    static Map<String, Object> values(ConfigurationSection section) {
+        if (MAP != null && section instanceof MemorySection) {
+            Configuration root = section.getRoot();
+            // getValues() also includes defaults when they are copied
+            if (root == null || !root.options().copyDefaults())
+                return getMap((MemorySection) section);
+        }
+        return section.getValues(false);
+    }
+
     private static void setMap(MemorySection section, Map<String, Object> newMap) {
         Map<String, Object> map = getMap(section);
         map.clear();
         map.putAll(newMap);
     }
 
+    /**
+     * Deeply copies the content and settings of the specified configuration, so the copy
+     * can be modified without affecting the original.
+     */
+    private static YamlConfiguration copy(YamlConfiguration config) {
+        YamlConfiguration copy = copyOptions(config);
+        copy(config, copy);
+        return copy;
+    }
+
+    /**
+     * Creates an empty configuration with the settings and defaults of the specified one
+     */
+    private static YamlConfiguration copyOptions(YamlConfiguration config) {
+        YamlConfiguration copy = new YamlConfiguration();
+        copy.options()
+                .pathSeparator(config.options().pathSeparator())
+                .indent(config.options().indent())
+                .header(config.options().header())
+                .copyHeader(config.options().copyHeader())
+                .copyDefaults(config.options().copyDefaults());
+        if (config.getDefaults() != null)
+            copy.setDefaults(config.getDefaults());
+        return copy;
+    }
+
+    private static void copy(ConfigurationSection from, ConfigurationSection to) {
+        for (Entry<String, Object> e : values(from).entrySet()) {
+            if (e.getValue() instanceof ConfigurationSection)
+                copy((ConfigurationSection) e.getValue(), to.createSection(e.getKey()));
+            else
+                to.set(e.getKey(), copyValue(e.getValue()));
+        }
+    }
+
+    private static Object copyValue(Object value) {
+        if (value instanceof List) {
+            List<Object> list = new ArrayList<>(((List<?>) value).size());
+            for (Object element : (List<?>) value)
+                list.add(copyValue(element));
+            return list;
+        }
+        if (value instanceof Map) {
+            Map<Object, Object> map = new LinkedHashMap<>();
+            for (Entry<?, ?> e : ((Map<?, ?>) value).entrySet())
+                map.put(e.getKey(), copyValue(e.getValue()));
+            return map;
+        }
+        return value; // scalars, and serializables which are written as they are
+    }
+
     private Object convert(Object value) {
         if (value == null) return null;
         Class<?> type = value.getClass();
         if (type == String.class || Primitives.isPrimitive(type) || Primitives.isWrapperType(type))
             return value;
-        if (type.isArray()) {
-            List<Object> values = new ArrayList<>();
-            for (Object o : ((Object[]) value)) {
-                values.add(convert(o));
-            }
-            return values;
-        }
-        if (Collection.class.isAssignableFrom(type)) {
-            List<Object> values = new ArrayList<>();
-            for (Object o : ((Iterable<Object>) value)) {
-                values.add(convert(o));
-            }
-            return values;
-        }
-        return gson.fromJson(gson.toJsonTree(value), mapType.getType());
+        return unbind(value);
+    }
+
+    /**
+     * Binds the specified configuration value to the specified type, reading the value
+     * directly instead of converting it to a JSON tree first.
+     */
+    private <T> T bind(Object value, Type type) {
+        return gson.fromJson(new ObjectReader(gson, value), type);
+    }
+
+    /**
+     * Converts the specified object into maps, lists and scalars that can be stored in
+     * the configuration, without converting it to a JSON tree first.
+     */
+    private Object unbind(Object value) {
+        if (value == null) return null;
+        ObjectWriter writer = new ObjectWriter();
+        gson.toJson(value, value.getClass(), writer);
+        return writer.get();
     }
 
 }
\ No newline at end of file
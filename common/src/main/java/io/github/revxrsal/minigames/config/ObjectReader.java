@@ -0,0 +1,283 @@
+package io.github.revxrsal.minigames.config;
+
+import com.google.gson.*;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.serialization.ConfigurationSerializable;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.lang.reflect.Array;
+import java.util.*;
+import java.util.Map.Entry;
+
+/**
+ * A {@link JsonReader} that reads directly from the objects of a YAML configuration, such as
+ * sections, maps, lists and scalars, without building a JSON tree first.
+ * <p>
+ * Gson reads maps through an internal hook that only works with its own readers, so map
+ * adapters must call {@link #nextObjectAsPairs()} before reading, which presents the next
+ * object as an array of {@code [key, value]} pairs instead.
+ *
+ * @see MappedConfiguration.MapPairsTypeAdapterFactory
+ */
+final class ObjectReader extends JsonReader {
+
+    private static final Reader UNREADABLE = new Reader() {
+        @Override public int read(char[] buffer, int offset, int count) {
+            throw new AssertionError();
+        }
+
+        @Override public void close() {
+            throw new AssertionError();
+        }
+    };
+
+    private static final Object NULL = new Object();
+
+    private final Gson gson;
+    private Object[] stack = new Object[32];
+    private int size = 0;
+    private boolean pairs = false;
+
+    ObjectReader(Gson gson, Object root) {
+        super(UNREADABLE);
+        this.gson = gson;
+        push(node(root));
+    }
+
+    /**
+     * Presents the next value, if it is an object, as an array of {@code [key, value]} pairs
+     */
+    void nextObjectAsPairs() {
+        pairs = true;
+    }
+
+    @Override public JsonToken peek() throws IOException {
+        boolean pairs = this.pairs;
+        this.pairs = false;
+        if (size == 0) return JsonToken.END_DOCUMENT;
+        Object top = stack[size - 1];
+        if (top instanceof Obj) {
+            Obj obj = (Obj) top;
+            if (!obj.begun) {
+                if (!pairs) return JsonToken.BEGIN_OBJECT;
+                stack[size - 1] = obj.asPairs();
+                return JsonToken.BEGIN_ARRAY;
+            }
+            return obj.entries.hasNext() ? JsonToken.NAME : JsonToken.END_OBJECT;
+        }
+        if (top instanceof Arr) {
+            Arr arr = (Arr) top;
+            if (!arr.begun) return JsonToken.BEGIN_ARRAY;
+            if (!arr.elements.hasNext()) return JsonToken.END_ARRAY;
+            arr.index++;
+            push(node(arr.elements.next()));
+            this.pairs = pairs;
+            return peek();
+        }
+        if (top == NULL) return JsonToken.NULL;
+        if (top instanceof String) return JsonToken.STRING;
+        if (top instanceof Boolean) return JsonToken.BOOLEAN;
+        return JsonToken.NUMBER;
+    }
+
+    private void expect(JsonToken expected) throws IOException {
+        JsonToken token = peek();
+        if (token != expected)
+            throw new IllegalStateException("Expected " + expected + " but was " + token + " at path " + getPath());
+    }
+
+    @Override public void beginArray() throws IOException {
+        expect(JsonToken.BEGIN_ARRAY);
+        ((Arr) stack[size - 1]).begun = true;
+    }
+
+    @Override public void endArray() throws IOException {
+        expect(JsonToken.END_ARRAY);
+        pop();
+    }
+
+    @Override public void beginObject() throws IOException {
+        expect(JsonToken.BEGIN_OBJECT);
+        ((Obj) stack[size - 1]).begun = true;
+    }
+
+    @Override public void endObject() throws IOException {
+        expect(JsonToken.END_OBJECT);
+        pop();
+    }
+
+    @Override public boolean hasNext() throws IOException {
+        JsonToken token = peek();
+        return token != JsonToken.END_OBJECT && token != JsonToken.END_ARRAY && token != JsonToken.END_DOCUMENT;
+    }
+
+    @Override public String nextName() throws IOException {
+        expect(JsonToken.NAME);
+        Obj obj = (Obj) stack[size - 1];
+        Entry<?, ?> entry = obj.entries.next();
+        obj.name = String.valueOf(entry.getKey());
+        push(node(entry.getValue()));
+        return obj.name;
+    }
+
+    @Override public String nextString() throws IOException {
+        JsonToken token = peek();
+        if (token != JsonToken.STRING && token != JsonToken.NUMBER)
+            throw new IllegalStateException("Expected " + JsonToken.STRING + " but was " + token + " at path " + getPath());
+        return String.valueOf(pop());
+    }
+
+    @Override public boolean nextBoolean() throws IOException {
+        expect(JsonToken.BOOLEAN);
+        return (Boolean) pop();
+    }
+
+    @Override public void nextNull() throws IOException {
+        expect(JsonToken.NULL);
+        pop();
+    }
+
+    @Override public double nextDouble() throws IOException {
+        JsonToken token = peek();
+        if (token != JsonToken.NUMBER && token != JsonToken.STRING)
+            throw new IllegalStateException("Expected " + JsonToken.NUMBER + " but was " + token + " at path " + getPath());
+        Object value = stack[size - 1];
+        double result = value instanceof Number ? ((Number) value).doubleValue() : Double.parseDouble((String) value);
+        if (!isLenient() && (Double.isNaN(result) || Double.isInfinite(result)))
+            throw new NumberFormatException("JSON forbids NaN and infinities: " + result);
+        pop();
+        return result;
+    }
+
+    @Override public long nextLong() throws IOException {
+        JsonToken token = peek();
+        if (token != JsonToken.NUMBER && token != JsonToken.STRING)
+            throw new IllegalStateException("Expected " + JsonToken.NUMBER + " but was " + token + " at path " + getPath());
+        Object value = stack[size - 1];
+        long result = value instanceof Number ? ((Number) value).longValue() : Long.parseLong((String) value);
+        pop();
+        return result;
+    }
+
+    @Override public int nextInt() throws IOException {
+        JsonToken token = peek();
+        if (token != JsonToken.NUMBER && token != JsonToken.STRING)
+            throw new IllegalStateException("Expected " + JsonToken.NUMBER + " but was " + token + " at path " + getPath());
+        Object value = stack[size - 1];
+        int result = value instanceof Number ? ((Number) value).intValue() : Integer.parseInt((String) value);
+        pop();
+        return result;
+    }
+
+    @Override public void skipValue() throws IOException {
+        switch (peek()) {
+            case NAME:
+                nextName();
+                break;
+            case END_ARRAY:
+                endArray();
+                break;
+            case END_OBJECT:
+                endObject();
+                break;
+            case END_DOCUMENT:
+                break;
+            default:
+                pop(); // objects and arrays are iterated lazily, so nothing else to skip
+        }
+    }
+
+    @Override public void close() {
+        Arrays.fill(stack, 0, size, null);
+        size = 0;
+    }
+
+    @Override public String getPath() {
+        StringBuilder path = new StringBuilder("$");
+        for (int i = 0; i < size; i++) {
+            if (stack[i] instanceof Arr && ((Arr) stack[i]).begun)
+                path.append('[').append(((Arr) stack[i]).index - 1).append(']');
+            else if (stack[i] instanceof Obj && ((Obj) stack[i]).name != null)
+                path.append('.').append(((Obj) stack[i]).name);
+        }
+        return path.toString();
+    }
+
+    @Override public String toString() {
+        return getClass().getSimpleName() + " at path " + getPath();
+    }
+
+    private void push(Object node) {
+        if (size == stack.length)
+            stack = Arrays.copyOf(stack, size * 2);
+        stack[size++] = node;
+    }
+
+    private Object pop() {
+        Object top = stack[--size];
+        stack[size] = null;
+        return top;
+    }
+
+    /**
+     * Converts the specified value into a node of this reader, which is either
+     * {@link #NULL}, a string, a boolean, a number, an {@link Obj} or an {@link Arr}.
+     */
+    private Object node(Object value) {
+        if (value == null || value instanceof JsonNull) return NULL;
+        if (value instanceof String || value instanceof Boolean || value instanceof Number) return value;
+        if (value instanceof Character || value instanceof Enum) return value.toString();
+        if (value instanceof ConfigurationSection)
+            return new Obj(MappedConfiguration.values((ConfigurationSection) value).entrySet());
+        if (value instanceof Map) return new Obj(((Map<?, ?>) value).entrySet());
+        if (value instanceof Collection) return new Arr((Collection<?>) value);
+        if (value instanceof ConfigurationSerializable)
+            return new Obj(((ConfigurationSerializable) value).serialize().entrySet());
+        if (value.getClass().isArray()) {
+            List<Object> list = new ArrayList<>();
+            for (int i = 0, length = Array.getLength(value); i < length; i++)
+                list.add(Array.get(value, i));
+            return new Arr(list);
+        }
+        if (value instanceof JsonObject) return new Obj(((JsonObject) value).entrySet());
+        if (value instanceof JsonArray) return new Arr((JsonArray) value);
+        if (value instanceof JsonPrimitive) {
+            JsonPrimitive primitive = (JsonPrimitive) value;
+            if (primitive.isBoolean()) return primitive.getAsBoolean();
+            if (primitive.isNumber()) return primitive.getAsNumber();
+            return primitive.getAsString();
+        }
+        return node(gson.toJsonTree(value));
+    }
+
+    private static final class Obj {
+
+        private final Iterator<? extends Entry<?, ?>> entries;
+        private boolean begun = false;
+        private String name;
+
+        Obj(Set<? extends Entry<?, ?>> entries) {
+            this.entries = entries.iterator();
+        }
+
+        Arr asPairs() {
+            List<Object> pairs = new ArrayList<>();
+            entries.forEachRemaining(e -> pairs.add(Arrays.asList(e.getKey(), e.getValue())));
+            return new Arr(pairs);
+        }
+    }
+
+    private static final class Arr {
+
+        private final Iterator<?> elements;
+        private boolean begun = false;
+        private int index = 0;
+
+        Arr(Iterable<?> elements) {
+            this.elements = elements.iterator();
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package io.github.revxrsal.minigames.config;
+
+import com.google.gson.internal.LazilyParsedNumber;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A {@link JsonWriter} that writes directly into the objects a YAML configuration stores,
+ * which are maps, lists and scalars, without building a JSON tree first.
+ */
+final class ObjectWriter extends JsonWriter {
+
+    private static final Writer UNWRITABLE = new Writer() {
+        @Override public void write(char[] buffer, int offset, int counter) {
+            throw new AssertionError();
+        }
+
+        @Override public void flush() {
+            throw new AssertionError();
+        }
+
+        @Override public void close() {
+            throw new AssertionError();
+        }
+    };
+
+    private final List<Object> stack = new ArrayList<>();
+    private String pendingName;
+    private Object product;
+
+    ObjectWriter() {
+        super(UNWRITABLE);
+    }
+
+    /**
+     * Returns the written value
+     *
+     * @return The value, which is a map, a list, a scalar or null
+     */
+    Object get() {
+        if (!stack.isEmpty())
+            throw new IllegalStateException("Expected one value but the document is incomplete");
+        return product;
+    }
+
+    private Object peek() {
+        return stack.get(stack.size() - 1);
+    }
+
+    @SuppressWarnings("unchecked")
+    private ObjectWriter put(Object value) {
+        if (pendingName != null) {
+            if (value != null || getSerializeNulls())
+                ((Map<String, Object>) peek()).put(pendingName, value);
+            pendingName = null;
+        } else if (stack.isEmpty()) {
+            product = value;
+        } else if (peek() instanceof List) {
+            ((List<Object>) peek()).add(value);
+        } else {
+            throw new IllegalStateException("Expected a name");
+        }
+        return this;
+    }
+
+    @Override public JsonWriter beginArray() {
+        List<Object> list = new ArrayList<>();
+        put(list);
+        stack.add(list);
+        return this;
+    }
+
+    @Override public JsonWriter endArray() {
+        if (stack.isEmpty() || pendingName != null || !(peek() instanceof List))
+            throw new IllegalStateException("Not in an array");
+        stack.remove(stack.size() - 1);
+        return this;
+    }
+
+    @Override public JsonWriter beginObject() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        put(map);
+        stack.add(map);
+        return this;
+    }
+
+    @Override public JsonWriter endObject() {
+        if (stack.isEmpty() || pendingName != null || !(peek() instanceof Map))
+            throw new IllegalStateException("Not in an object");
+        stack.remove(stack.size() - 1);
+        return this;
+    }
+
+    @Override public JsonWriter name(String name) {
+        requireNonNull(name, "name is null!");
+        if (stack.isEmpty() || pendingName != null || !(peek() instanceof Map))
+            throw new IllegalStateException("Not expecting a name");
+        pendingName = name;
+        return this;
+    }
+
+    @Override public JsonWriter value(String value) {
+        return put(value);
+    }
+
+    @Override public JsonWriter jsonValue(String value) {
+        throw new UnsupportedOperationException("Raw JSON values cannot be written to a configuration");
+    }
+
+    @Override public JsonWriter nullValue() {
+        return put(null);
+    }
+
+    @Override public JsonWriter value(boolean value) {
+        return put(value);
+    }
+
+    @Override public JsonWriter value(Boolean value) {
+        return put(value);
+    }
+
+    @Override public JsonWriter value(double value) {
+        if (!isLenient() && (Double.isNaN(value) || Double.isInfinite(value)))
+            throw new IllegalArgumentException("JSON forbids NaN and infinities: " + value);
+        return put(value);
+    }
+
+    @Override public JsonWriter value(long value) {
+        return put(value);
+    }
+
+    @Override public JsonWriter value(Number value) {
+        if (value == null) return nullValue();
+        if (!isLenient()) {
+            double d = value.doubleValue();
+            if (Double.isNaN(d) || Double.isInfinite(d))
+                throw new IllegalArgumentException("JSON forbids NaN and infinities: " + value);
+        }
+        if (value instanceof LazilyParsedNumber) { // not representable in YAML
+            String text = value.toString();
+            try {
+                return put(Long.parseLong(text));
+            } catch (NumberFormatException e) {
+                return put(Double.parseDouble(text));
+            }
+        }
+        return put(value);
+    }
+
+    @Override public void flush() {
+    }
+
+    @Override public void close() throws IOException {
+        if (!stack.isEmpty())
+            throw new IOException("Incomplete document");
+    }
+}
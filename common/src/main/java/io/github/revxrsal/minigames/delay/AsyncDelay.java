@@ -4,17 +4,26 @@ import io.github.revxrsal.minigames.MinigamePlugin;
 import org.bukkit.OfflinePlayer;
 import org.bukkit.command.ConsoleCommandSender;
 import org.bukkit.entity.Entity;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.jetbrains.annotations.NotNull;
 
-import java.util.HashMap;
-import java.util.Map;
-import java.util.UUID;
+import java.util.*;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
 import java.util.function.Function;
+import java.util.function.LongUnaryOperator;
 
 /**
  * A delay handler that updates asynchronously
+ * <p>
+ * Each target gets a single array of expiry times indexed by the context's ordinal, and
+ * delays are checked lazily against the current time, so no task is scheduled per delay.
+ * Players are removed automatically once they quit and all their delays have ended.
  *
  * @param <E> The context of delays.
  */
@@ -24,30 +33,135 @@ public final class AsyncDelay<E extends Enum<E>> {
 
     private static final Map<Class<?>, Function<?, UUID>> TO_UUID = new HashMap<>();
 
+    /**
+     * All created delays, to clean up players when they quit
+     */
+    private static final Set<AsyncDelay<?>> INSTANCES = Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<>()));
+
+    /**
+     * The time all expiry times are relative to
+     */
+    private static final long ORIGIN = System.nanoTime();
+
     public static <T> void registerUUIDAdapter(Class<T> type, Function<T, UUID> convert) {
         TO_UUID.put(type, convert);
     }
 
-    private final Map<UUID, Map<E, Long>> delays = new ConcurrentHashMap<>();
+    private final Map<UUID, AtomicLongArray> delays = new ConcurrentHashMap<>();
+    private volatile int contexts = -1;
 
-    private Map<E, Long> get(UUID uuid) {
-        return delays.computeIfAbsent(uuid, c -> new ConcurrentHashMap<>());
+    public AsyncDelay() {
+        INSTANCES.add(this);
     }
 
-    public CompletableFuture<Void> delay(Object target, E context, long duration, TimeUnit object) {
+    public AsyncDelay(@NotNull Class<E> type) {
+        this();
+        contexts = type.getEnumConstants().length;
+    }
+
+    /**
+     * Updates the expiry time of the specified context. This is done inside the map, so it cannot
+     * race with the target being {@link #prune(UUID) pruned} or {@link #cancelAll(Object) removed}
+     */
+    private void update(UUID uuid, E context, LongUnaryOperator expiry) {
+        int size = contexts;
+        if (size == -1)
+            contexts = size = context.getDeclaringClass().getEnumConstants().length;
+        int length = size;
+        delays.compute(uuid, (k, slots) -> {
+            if (slots == null) slots = new AtomicLongArray(length);
+            slots.updateAndGet(context.ordinal(), expiry);
+            return slots;
+        });
+    }
+
+    /**
+     * Adds a delay to the specified target, replacing any existing one.
+     *
+     * @param target   The target. Can be a player, an entity, the console, a UUID or any registered type
+     * @param context  The delay context
+     * @param duration The delay duration. A duration of 0 does nothing
+     * @param unit     The duration unit
+     * @return A future that completes once the delay ends
+     * @deprecated This schedules a task to complete the future. Use {@link #setDelay(Object, Enum, long, TimeUnit)},
+     * and {@link #whenExpired(Object, Enum)} only when the future is needed.
+     */
+    @Deprecated
+    public CompletableFuture<Void> delay(Object target, E context, long duration, TimeUnit unit) {
         if (duration == 0) return CompletableFuture.completedFuture(null);
         UUID uuid = getUUID(target);
-        get(uuid).put(context, System.currentTimeMillis());
-        CompletableFuture<Void> future = new CompletableFuture<>();
-        MinigamePlugin.SCHEDULED_SERVICE.schedule(() -> {
-            get(uuid).remove(context);
-            future.complete(null);
-        }, duration, object);
-        return future;
+        setDelay(uuid, context, duration, unit);
+        return whenExpired(uuid, context);
     }
 
+    /**
+     * Adds a delay to the specified target, replacing any existing one. A duration of 0 does
+     * nothing, and a negative one removes the delay.
+     * <p>
+     * Unlike {@link #delay(Object, Enum, long, TimeUnit)}, this does not schedule anything.
+     *
+     * @param target   The target. Can be a player, an entity, the console, a UUID or any registered type
+     * @param context  The delay context
+     * @param duration The delay duration
+     * @param unit     The duration unit
+     */
+    public void setDelay(Object target, E context, long duration, TimeUnit unit) {
+        if (duration == 0) return;
+        UUID uuid = getUUID(target);
+        if (duration < 0) {
+            cancel(uuid, context);
+            return;
+        }
+        long expiry = now() + unit.toMillis(duration);
+        update(uuid, context, e -> expiry);
+    }
+
+    /**
+     * Extends the delay of the specified target. If the target has no delay,
+     * this behaves exactly like {@link #setDelay(Object, Enum, long, TimeUnit)}.
+     *
+     * @param target   The target
+     * @param context  The delay context
+     * @param duration Duration to extend by
+     * @param unit     The duration unit
+     */
+    public void extend(Object target, E context, long duration, TimeUnit unit) {
+        long extension = unit.toMillis(duration);
+        long now = now();
+        update(getUUID(target), context, expiry -> Math.max(expiry, now) + extension);
+    }
+
+    /**
+     * Removes the delay of the specified target
+     *
+     * @param target  The target
+     * @param context The delay context
+     */
+    public void cancel(Object target, E context) {
+        AtomicLongArray slots = delays.get(getUUID(target));
+        if (slots != null) slots.set(context.ordinal(), 0);
+    }
+
+    /**
+     * Removes all delays of the specified target
+     *
+     * @param target The target
+     */
+    public void cancelAll(Object target) {
+        delays.remove(getUUID(target));
+    }
+
+    /**
+     * Returns the time left for the delay of the specified target, in milliseconds.
+     *
+     * @param target  The target
+     * @param context The delay context
+     * @return The time left, or 0 if the target has no delay
+     */
     public long getTimeLeft(Object target, E context) {
-        return System.currentTimeMillis() - get(getUUID(target)).getOrDefault(context, System.currentTimeMillis());
+        AtomicLongArray slots = delays.get(getUUID(target));
+        if (slots == null) return 0;
+        return Math.max(0, slots.get(context.ordinal()) - now());
     }
 
     public boolean hasDelay(Object target, E context) {
@@ -55,7 +169,49 @@ public final class AsyncDelay<E extends Enum<E>> {
     }
 
     public long getTimeLeft(Object target, E context, TimeUnit unit) {
-        return TimeUnit.MILLISECONDS.convert(getTimeLeft(target, context), unit);
+        return unit.convert(getTimeLeft(target, context), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Returns a future that completes once the delay of the specified target ends, taking any
+     * extensions into account. The future completes immediately if there is no delay.
+     *
+     * @param target  The target
+     * @param context The delay context
+     * @return The future
+     */
+    public CompletableFuture<Void> whenExpired(Object target, E context) {
+        UUID uuid = getUUID(target);
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        awaitExpiry(uuid, context, future);
+        return future;
+    }
+
+    private void awaitExpiry(UUID uuid, E context, CompletableFuture<Void> future) {
+        long left = getTimeLeft(uuid, context);
+        if (left <= 0)
+            future.complete(null);
+        else
+            MinigamePlugin.SCHEDULED_SERVICE.schedule(() -> awaitExpiry(uuid, context, future), left, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Removes the specified target once all its delays have ended
+     */
+    private void prune(UUID uuid) {
+        long[] left = {0};
+        delays.computeIfPresent(uuid, (k, slots) -> {
+            long now = now();
+            for (int i = 0; i < slots.length(); i++)
+                left[0] = Math.max(left[0], slots.get(i) - now);
+            return left[0] <= 0 ? null : slots;
+        });
+        if (left[0] > 0) // keep it until it ends, so players cannot skip delays by rejoining
+            MinigamePlugin.SCHEDULED_SERVICE.schedule(() -> prune(uuid), left[0], TimeUnit.MILLISECONDS);
+    }
+
+    private static long now() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - ORIGIN) + 1; // never 0, which means no delay
     }
 
     private UUID getUUID(Object o) {
@@ -77,4 +233,19 @@ public final class AsyncDelay<E extends Enum<E>> {
         }
         throw new IllegalArgumentException("Don't know how to get the UUID from " + o + ".");
     }
+
+    /**
+     * Removes the delays of players after they quit
+     */
+    public static class QuitListener implements Listener {
+
+        @EventHandler(priority = EventPriority.MONITOR)
+        public void onPlayerQuit(PlayerQuitEvent event) {
+            UUID uuid = event.getPlayer().getUniqueId();
+            synchronized (INSTANCES) {
+                for (AsyncDelay<?> delay : INSTANCES)
+                    delay.prune(uuid);
+            }
+        }
+    }
 }
@@ -0,0 +1,401 @@
+package io.github.revxrsal.minigames.event;
+
+import com.google.common.base.Preconditions;
+import io.github.revxrsal.minigames.MinigamePlugin;
+import org.bukkit.event.EventPriority;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * An asynchronous delivery lane for events posted to an {@link EventBus}.
+ * <p>
+ * Events are pushed into a bounded queue on the posting thread, and are delivered in batches
+ * to a {@link BatchSubscriber} on the lane's executor. This is useful for consumers that do not
+ * need to run on the main thread, such as stat recorders and leaderboards.
+ * <p>
+ * Construct with {@link EventBus#lane(Class)}.
+ *
+ * @param <T> The event type
+ */
+public final class AsyncLane<T> implements EventSubscriber<T> {
+
+    private final String name;
+    private final BatchSubscriber<T> subscriber;
+    private final Executor executor;
+    private final OverflowPolicy policy;
+    private final int batchSize;
+    private final long lingerMillis;
+    @Nullable private final Function<? super T, ?> coalesceKey;
+
+    private final BlockingQueue<Object> queue;
+    private final Map<Object, Pending<T>> coalesced;
+    private final AtomicBoolean scheduled = new AtomicBoolean(false);
+    private volatile boolean closed = false;
+    private Subscription subscription;
+
+    private final LongAdder accepted = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder merged = new LongAdder();
+    private final LongAdder delivered = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+
+    private AsyncLane(String name,
+                      BatchSubscriber<T> subscriber,
+                      Executor executor,
+                      OverflowPolicy policy,
+                      int capacity,
+                      int batchSize,
+                      long lingerMillis,
+                      @Nullable Function<? super T, ?> coalesceKey) {
+        this.name = name;
+        this.subscriber = subscriber;
+        this.executor = executor;
+        this.policy = policy;
+        this.batchSize = batchSize;
+        this.lingerMillis = lingerMillis;
+        this.coalesceKey = coalesceKey;
+        queue = new ArrayBlockingQueue<>(capacity);
+        coalesced = policy == OverflowPolicy.COALESCE ? new ConcurrentHashMap<>() : null;
+    }
+
+    /**
+     * Pushes the specified event to this lane. This is invoked by the bus on the posting thread.
+     *
+     * @param event Event to push
+     */
+    @Override public void handle(@NotNull T event) {
+        if (closed) return;
+        switch (policy) {
+            case DROP: {
+                if (!queue.offer(event)) {
+                    dropped.increment();
+                    return;
+                }
+                break;
+            }
+            case BLOCK: {
+                try {
+                    queue.put(event);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    dropped.increment();
+                    return;
+                }
+                break;
+            }
+            case COALESCE: {
+                Object key = requireNonNull(coalesceKey.apply(event), "coalesce key is null!");
+                Pending<T> pending = new Pending<>(event, 0);
+                if (coalesced.merge(key, pending, Pending::replace) != pending) {
+                    merged.increment(); // an older event with the same key is still queued
+                    return;
+                }
+                if (!queue.offer(key)) {
+                    // newer events may have been merged into this one meanwhile, and are not queued either
+                    Pending<T> removed = coalesced.remove(key);
+                    int merges = removed == null ? 0 : removed.merges;
+                    merged.add(-merges);
+                    dropped.add(merges + 1);
+                    return;
+                }
+                break;
+            }
+        }
+        accepted.increment();
+        schedule();
+    }
+
+    /**
+     * Delivers all queued events on the calling thread. This should be used when the lane
+     * must be emptied immediately, for example when the plugin disables.
+     */
+    public void flush() {
+        drain();
+    }
+
+    /**
+     * Unsubscribes this lane from its bus and delivers any remaining events.
+     */
+    public void close() {
+        if (closed) return;
+        closed = true;
+        if (subscription != null) subscription.unsubscribe();
+        flush();
+    }
+
+    /**
+     * Returns a snapshot of this lane's metrics
+     *
+     * @return The lane metrics
+     */
+    @NotNull public Metrics getMetrics() {
+        return new Metrics(name, accepted.sum(), dropped.sum(), merged.sum(), delivered.sum(),
+                batches.sum(), failures.sum(), queue.size());
+    }
+
+    /**
+     * Returns the name of this lane
+     *
+     * @return The lane name
+     */
+    @NotNull public String getName() {
+        return name;
+    }
+
+    private void schedule() {
+        if (!scheduled.compareAndSet(false, true)) return;
+        if (lingerMillis > 0)
+            MinigamePlugin.SCHEDULED_SERVICE.schedule(() -> executor.execute(this::run), lingerMillis, TimeUnit.MILLISECONDS);
+        else
+            executor.execute(this::run);
+    }
+
+    private void run() {
+        drain();
+        scheduled.set(false);
+        if (!queue.isEmpty()) schedule(); // events pushed while we were finishing
+    }
+
+    @SuppressWarnings("unchecked")
+    private synchronized void drain() {
+        List<T> batch = new ArrayList<>(Math.min(batchSize, queue.size() + 1));
+        Object next;
+        while ((next = queue.poll()) != null) {
+            if (coalesced != null) {
+                Pending<T> pending = coalesced.remove(next);
+                if (pending == null) continue;
+                batch.add(pending.event);
+            } else
+                batch.add((T) next);
+            if (batch.size() >= batchSize) {
+                deliver(batch);
+                batch = new ArrayList<>(batchSize);
+            }
+        }
+        if (!batch.isEmpty()) deliver(batch);
+    }
+
+    private void deliver(List<T> batch) {
+        try {
+            subscriber.handle(batch);
+            delivered.add(batch.size());
+        } catch (Throwable t) {
+            failures.increment();
+            MinigamePlugin.getInstance().warn("Failed to deliver a batch of " + batch.size() + " events to lane " + name + ":");
+            t.printStackTrace();
+        }
+        batches.increment();
+    }
+
+    /**
+     * The latest event of a coalesce key, and how many older events were merged into it
+     */
+    private static final class Pending<T> {
+
+        private final T event;
+        private final int merges;
+
+        Pending(T event, int merges) {
+            this.event = event;
+            this.merges = merges;
+        }
+
+        Pending<T> replace(Pending<T> newer) {
+            return new Pending<>(newer.event, merges + 1);
+        }
+    }
+
+    /**
+     * Represents what a lane does when its queue is full
+     */
+    public enum OverflowPolicy {
+
+        /**
+         * New events are discarded until the queue has space
+         */
+        DROP,
+
+        /**
+         * The posting thread waits until the queue has space. Use with care on the main thread.
+         */
+        BLOCK,
+
+        /**
+         * Events with the same key replace each other while queued, so only the latest one
+         * is delivered. New keys are discarded when the queue is full.
+         */
+        COALESCE
+
+    }
+
+    /**
+     * An immutable snapshot of the counters of a lane
+     */
+    public static final class Metrics {
+
+        private final String lane;
+        private final long accepted, dropped, coalesced, delivered, batches, failures;
+        private final int queued;
+
+        private Metrics(String lane, long accepted, long dropped, long coalesced, long delivered, long batches, long failures, int queued) {
+            this.lane = lane;
+            this.accepted = accepted;
+            this.dropped = dropped;
+            this.coalesced = coalesced;
+            this.delivered = delivered;
+            this.batches = batches;
+            this.failures = failures;
+            this.queued = queued;
+        }
+
+        public String getLane() {
+            return lane;
+        }
+
+        public long getAccepted() {
+            return accepted;
+        }
+
+        public long getDropped() {
+            return dropped;
+        }
+
+        public long getCoalesced() {
+            return coalesced;
+        }
+
+        public long getDelivered() {
+            return delivered;
+        }
+
+        public long getBatches() {
+            return batches;
+        }
+
+        public long getFailures() {
+            return failures;
+        }
+
+        public int getQueued() {
+            return queued;
+        }
+
+        @Override public String toString() {
+            return "Lane " + lane + ": accepted=" + accepted + ", dropped=" + dropped + ", coalesced=" + coalesced
+                    + ", delivered=" + delivered + ", batches=" + batches + ", failures=" + failures + ", queued=" + queued;
+        }
+    }
+
+    public static final class Builder<T> {
+
+        private final EventBus bus;
+        private final Class<T> type;
+        private String name;
+        @Nullable private Object scope;
+        private EventPriority priority = EventPriority.MONITOR;
+        private boolean ignoreCancelled = true;
+        private Executor executor = MinigamePlugin.THREAD_POOL;
+        private OverflowPolicy policy = OverflowPolicy.DROP;
+        private int capacity = 4096;
+        private int batchSize = 256;
+        private long lingerMillis = 0;
+        @Nullable private Function<? super T, ?> coalesceKey;
+
+        Builder(EventBus bus, Class<T> type) {
+            this.bus = bus;
+            this.type = type;
+            name = type.getSimpleName();
+        }
+
+        public Builder<T> name(@NotNull String name) {
+            this.name = requireNonNull(name, "name is null!");
+            return this;
+        }
+
+        public Builder<T> scope(@Nullable Object scope) {
+            this.scope = scope;
+            return this;
+        }
+
+        public Builder<T> priority(@NotNull EventPriority priority) {
+            this.priority = requireNonNull(priority, "priority is null!");
+            return this;
+        }
+
+        public Builder<T> ignoreCancelled(boolean ignoreCancelled) {
+            this.ignoreCancelled = ignoreCancelled;
+            return this;
+        }
+
+        public Builder<T> executor(@NotNull Executor executor) {
+            this.executor = requireNonNull(executor, "executor is null!");
+            return this;
+        }
+
+        public Builder<T> capacity(int capacity) {
+            Preconditions.checkArgument(capacity > 0, "capacity must be greater than 0!");
+            this.capacity = capacity;
+            return this;
+        }
+
+        public Builder<T> batchSize(int batchSize) {
+            Preconditions.checkArgument(batchSize > 0, "batchSize must be greater than 0!");
+            this.batchSize = batchSize;
+            return this;
+        }
+
+        /**
+         * Sets how long to wait after the first queued event before delivering, so that more
+         * events get grouped in the same batch.
+         *
+         * @param linger Time to wait
+         * @param unit   The time unit
+         * @return This builder instance
+         */
+        public Builder<T> linger(long linger, @NotNull TimeUnit unit) {
+            Preconditions.checkArgument(linger >= 0, "linger cannot be negative!");
+            this.lingerMillis = unit.toMillis(linger);
+            return this;
+        }
+
+        public Builder<T> drop() {
+            policy = OverflowPolicy.DROP;
+            return this;
+        }
+
+        public Builder<T> block() {
+            policy = OverflowPolicy.BLOCK;
+            return this;
+        }
+
+        public Builder<T> coalesce(@NotNull Function<? super T, ?> key) {
+            coalesceKey = requireNonNull(key, "key is null!");
+            policy = OverflowPolicy.COALESCE;
+            return this;
+        }
+
+        /**
+         * Creates the lane and subscribes it to the bus
+         *
+         * @param subscriber Subscriber to deliver batches to
+         * @return The created lane
+         */
+        public AsyncLane<T> subscribe(@NotNull BatchSubscriber<T> subscriber) {
+            AsyncLane<T> lane = new AsyncLane<>(name, requireNonNull(subscriber, "subscriber is null!"),
+                    executor, policy, capacity, batchSize, lingerMillis, coalesceKey);
+            lane.subscription = bus.subscribe(scope, type, priority, ignoreCancelled, lane);
+            return lane;
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package io.github.revxrsal.minigames.event;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.List;
+
+/**
+ * Represents a handler that receives events from an {@link AsyncLane} in batches.
+ *
+ * @param <T> The event type
+ */
+@FunctionalInterface
+public interface BatchSubscriber<T> {
+
+    void handle(@NotNull List<T> batch);
+
+}
@@ -1,5 +1,417 @@
 package io.github.revxrsal.minigames.event;
 
+import io.github.revxrsal.minigames.MinigamePlugin;
+import org.bukkit.event.Cancellable;
+import org.bukkit.event.EventPriority;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.lang.invoke.*;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+import static java.lang.invoke.MethodType.methodType;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * An in-process dispatcher for game events.
+ * <p>
+ * Subscribers are grouped by their event type and scope, and are baked into a sorted array
+ * the first time an event type is posted. Posting an event afterwards only performs a map lookup
+ * and iterates over the array, without any allocations.
+ * <p>
+ * Events that implement {@link Scoped} are delivered to global subscribers and to subscribers
+ * registered for the same scope (for example, the arena the event happened in).
+ * <p>
+ * Methods annotated with {@link Subscribe} are compiled into {@link EventSubscriber}s using
+ * {@link LambdaMetafactory}, falling back to a bound {@link MethodHandle} when the method
+ * cannot be linked directly.
+ */
 public class EventBus {
 
+    private static final Subscription[] NONE = new Subscription[0];
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+    private static final MethodType SUBSCRIBER_TYPE = methodType(void.class, Object.class);
+
+    /**
+     * The hierarchy of each event type, cached to avoid walking it on every bake
+     */
+    private static final ClassValue<Class<?>[]> HIERARCHY = new ClassValue<Class<?>[]>() {
+        @Override protected Class<?>[] computeValue(Class<?> type) {
+            Set<Class<?>> types = new LinkedHashSet<>();
+            collectHierarchy(type, types);
+            return types.toArray(new Class<?>[0]);
+        }
+    };
+
+    /**
+     * Whether each event type implements {@link Scoped}. A failing instanceof check against an
+     * interface scans the supertypes of the class every time, which measured at about 30 ns
+     * per post for events that are not scoped
+     */
+    private static final ClassValue<Boolean> SCOPED = new ClassValue<Boolean>() {
+        @Override protected Boolean computeValue(Class<?> type) {
+            return Scoped.class.isAssignableFrom(type);
+        }
+    };
+
+    /**
+     * The compiled subscriber factories of each class, by method. Every factory call spins a
+     * new class, so without reusing them each listener instance would get its own lambda class,
+     * and posting to several listeners of the same class could not be inlined
+     */
+    private static final ClassValue<Map<Method, MethodHandle>> FACTORIES = new ClassValue<Map<Method, MethodHandle>>() {
+        @Override protected Map<Method, MethodHandle> computeValue(Class<?> type) {
+            return new ConcurrentHashMap<>();
+        }
+    };
+
+    private final Bucket global = new Bucket();
+    private final Map<Object, Bucket> scopes = new ConcurrentHashMap<>();
+    private long order = 0;
+
+    /**
+     * Posts the specified event to all its subscribers.
+     *
+     * @param event Event to post
+     * @param <T>   The event type
+     * @return The same event instance, for chaining
+     */
+    public <T> T post(@NotNull T event) {
+        Class<?> type = event.getClass();
+        Object scope = SCOPED.get(type) ? ((Scoped) event).getScope() : null;
+        Bucket bucket = scope == null ? global : scopes.getOrDefault(scope, global);
+        Subscription[] subscriptions = bucket.baked.get(type);
+        if (subscriptions == null)
+            subscriptions = bake(bucket, type);
+        if (subscriptions.length == 0) return event;
+        for (Subscription subscription : subscriptions) {
+            if (subscription.ignoreCancelled && event instanceof Cancellable && ((Cancellable) event).isCancelled())
+                continue;
+            try {
+                subscription.subscriber.handle(event);
+            } catch (Throwable t) {
+                MinigamePlugin.getInstance().warn("Failed to pass " + type.getSimpleName() + " to " + subscription + ":");
+                t.printStackTrace();
+            }
+        }
+        return event;
+    }
+
+    /**
+     * Returns whether the specified event type has any subscribers, either globally or in the specified scope.
+     * <p>
+     * This can be used to avoid constructing events that nobody listens to.
+     *
+     * @param type  Event type to check for
+     * @param scope The scope. Can be null
+     * @return Whether there are any subscribers or not
+     */
+    public boolean hasSubscribers(@NotNull Class<?> type, @Nullable Object scope) {
+        Bucket bucket = scope == null ? global : scopes.getOrDefault(scope, global);
+        Subscription[] subscriptions = bucket.baked.get(type);
+        if (subscriptions == null)
+            subscriptions = bake(bucket, type);
+        return subscriptions.length != 0;
+    }
+
+    /**
+     * Subscribes to the specified event type globally
+     *
+     * @param type       Event type to subscribe to
+     * @param subscriber Subscriber to invoke
+     * @param <T>        The event type
+     * @return The created subscription
+     */
+    public <T> Subscription subscribe(@NotNull Class<T> type, @NotNull EventSubscriber<? super T> subscriber) {
+        return subscribe(null, type, EventPriority.NORMAL, false, subscriber);
+    }
+
+    /**
+     * Subscribes to the specified event type globally
+     *
+     * @param type       Event type to subscribe to
+     * @param priority   The subscriber priority
+     * @param subscriber Subscriber to invoke
+     * @param <T>        The event type
+     * @return The created subscription
+     */
+    public <T> Subscription subscribe(@NotNull Class<T> type, @NotNull EventPriority priority, @NotNull EventSubscriber<? super T> subscriber) {
+        return subscribe(null, type, priority, false, subscriber);
+    }
+
+    /**
+     * Subscribes to the specified event type
+     *
+     * @param scope           The scope to listen in, or null to listen globally
+     * @param type            Event type to subscribe to
+     * @param priority        The subscriber priority
+     * @param ignoreCancelled Whether should cancelled events be skipped
+     * @param subscriber      Subscriber to invoke
+     * @param <T>             The event type
+     * @return The created subscription
+     */
+    @SuppressWarnings("unchecked")
+    public <T> Subscription subscribe(@Nullable Object scope,
+                                      @NotNull Class<T> type,
+                                      @NotNull EventPriority priority,
+                                      boolean ignoreCancelled,
+                                      @NotNull EventSubscriber<? super T> subscriber) {
+        requireNonNull(type, "type is null!");
+        requireNonNull(priority, "priority is null!");
+        requireNonNull(subscriber, "subscriber is null!");
+        synchronized (this) {
+            Subscription subscription = new Subscription(this, type, priority, ignoreCancelled, (EventSubscriber<Object>) subscriber, scope, null, order++);
+            add(subscription);
+            return subscription;
+        }
+    }
+
+    /**
+     * Creates a builder for an {@link AsyncLane} that receives events of the specified type
+     * in batches, off the posting thread.
+     *
+     * @param type Event type to listen to
+     * @param <T>  The event type
+     * @return A new lane builder
+     */
+    public <T> AsyncLane.Builder<T> lane(@NotNull Class<T> type) {
+        return new AsyncLane.Builder<>(this, requireNonNull(type, "type is null!"));
+    }
+
+    /**
+     * Registers all methods annotated with {@link Subscribe} in the specified listener globally.
+     *
+     * @param listener Listener to register
+     * @return The created subscriptions
+     */
+    public List<Subscription> register(@NotNull Object listener) {
+        return register(null, listener);
+    }
+
+    /**
+     * Registers all methods annotated with {@link Subscribe} in the specified listener.
+     *
+     * @param scope    The scope to listen in, or null to listen globally
+     * @param listener Listener to register
+     * @return The created subscriptions
+     */
+    public List<Subscription> register(@Nullable Object scope, @NotNull Object listener) {
+        requireNonNull(listener, "listener is null!");
+        List<Subscription> subscriptions = new ArrayList<>();
+        for (Class<?> c = listener.getClass(); c != null && c != Object.class; c = c.getSuperclass()) {
+            for (Method method : c.getDeclaredMethods()) {
+                Subscribe subscribe = method.getAnnotation(Subscribe.class);
+                if (subscribe == null) continue;
+                if (method.getParameterCount() != 1 || Modifier.isStatic(method.getModifiers()))
+                    throw new IllegalArgumentException("Method " + method + " must be non-static and accept exactly one parameter!");
+                Class<?> type = method.getParameterTypes()[0];
+                if (type.isPrimitive())
+                    throw new IllegalArgumentException("Method " + method + " cannot listen to a primitive type!");
+                EventSubscriber<Object> subscriber = createInvoker(listener, method);
+                synchronized (this) {
+                    Subscription subscription = new Subscription(this, type, subscribe.priority(), subscribe.ignoreCancelled(), subscriber, scope, listener, order++);
+                    add(subscription);
+                    subscriptions.add(subscription);
+                }
+            }
+        }
+        return subscriptions;
+    }
+
+    /**
+     * Unregisters all subscriptions that were registered from the specified listener
+     *
+     * @param listener Listener to unregister
+     */
+    public synchronized void unregister(@NotNull Object listener) {
+        requireNonNull(listener, "listener is null!");
+        removeIf(global, s -> s.owner == listener);
+        for (Bucket bucket : scopes.values())
+            removeIf(bucket, s -> s.owner == listener);
+    }
+
+    /**
+     * Unregisters all subscriptions in the specified scope. This should be invoked when
+     * the scope is no longer used, such as when an arena is disposed.
+     *
+     * @param scope Scope to unregister
+     */
+    public synchronized void unregisterScope(@NotNull Object scope) {
+        Bucket bucket = scopes.remove(requireNonNull(scope, "scope is null!"));
+        if (bucket != null) bucket.invalidate();
+    }
+
+    /**
+     * Removes the specified subscription
+     *
+     * @param subscription Subscription to remove
+     */
+    public synchronized void unsubscribe(@NotNull Subscription subscription) {
+        if (subscription.bus != this) return;
+        if (subscription.scope == null) {
+            removeIf(global, s -> s == subscription);
+        } else {
+            Bucket bucket = scopes.get(subscription.scope);
+            if (bucket != null) removeIf(bucket, s -> s == subscription);
+        }
+    }
+
+    private void add(Subscription subscription) {
+        if (subscription.scope == null) {
+            global.subscriptions.computeIfAbsent(subscription.type, k -> new ArrayList<>()).add(subscription);
+            invalidateAll();
+        } else {
+            Bucket bucket = scopes.computeIfAbsent(subscription.scope, k -> new Bucket());
+            bucket.subscriptions.computeIfAbsent(subscription.type, k -> new ArrayList<>()).add(subscription);
+            bucket.invalidate();
+        }
+    }
+
+    private void removeIf(Bucket bucket, Predicate<Subscription> filter) {
+        boolean removed = false;
+        for (Iterator<List<Subscription>> iterator = bucket.subscriptions.values().iterator(); iterator.hasNext(); ) {
+            List<Subscription> list = iterator.next();
+            removed |= list.removeIf(filter);
+            if (list.isEmpty()) iterator.remove();
+        }
+        if (!removed) return;
+        if (bucket == global)
+            invalidateAll();
+        else
+            bucket.invalidate();
+    }
+
+    private void invalidateAll() {
+        global.invalidate();
+        for (Bucket bucket : scopes.values())
+            bucket.invalidate();
+    }
+
+    /**
+     * Creates the sorted subscriber array of the specified event type in the specified bucket
+     */
+    private Subscription[] bake(Bucket bucket, Class<?> eventType) {
+        synchronized (this) {
+            Subscription[] baked = bucket.baked.get(eventType);
+            if (baked != null) return baked;
+            List<Subscription> subscriptions = new ArrayList<>();
+            for (Class<?> type : HIERARCHY.get(eventType)) {
+                List<Subscription> list = global.subscriptions.get(type);
+                if (list != null) subscriptions.addAll(list);
+                if (bucket != global) {
+                    list = bucket.subscriptions.get(type);
+                    if (list != null) subscriptions.addAll(list);
+                }
+            }
+            if (subscriptions.isEmpty())
+                baked = NONE;
+            else {
+                subscriptions.sort(Comparator.<Subscription>comparingInt(s -> s.priority.ordinal()).thenComparingLong(s -> s.order));
+                baked = subscriptions.toArray(NONE);
+            }
+            bucket.baked.put(eventType, baked);
+            return baked;
+        }
+    }
+
+    /**
+     * Compiles the specified method into an {@link EventSubscriber}.
+     *
+     * @param listener Listener instance
+     * @param method   Method to compile
+     * @return The compiled subscriber
+     */
+    @SuppressWarnings("unchecked")
+    private static EventSubscriber<Object> createInvoker(Object listener, Method method) {
+        MethodHandle handle;
+        try {
+            method.setAccessible(true);
+            handle = LOOKUP.unreflect(method);
+        } catch (IllegalAccessException e) {
+            throw new IllegalArgumentException("Cannot access method " + method, e);
+        }
+        if (isLinkable(method)) {
+            MethodHandle factory = FACTORIES.get(method.getDeclaringClass()).computeIfAbsent(method, m -> link(m, handle));
+            if (factory != null) {
+                try {
+                    return (EventSubscriber<Object>) factory.invoke(listener);
+                } catch (Throwable ignored) {
+                    // fall back to a bound handle
+                }
+            }
+        }
+        MethodHandle bound = handle.bindTo(listener).asType(SUBSCRIBER_TYPE);
+        return event -> {
+            try {
+                bound.invokeExact(event);
+            } catch (Throwable t) {
+                throw MinigamePlugin.sneakyThrow(t);
+            }
+        };
+    }
+
+    /**
+     * Creates a factory that binds the specified method to a listener as an {@link EventSubscriber}
+     *
+     * @return The factory, or null if the method cannot be linked from here (e.g. a different
+     * class loader), in which case a bound handle is used instead
+     */
+    private static @Nullable MethodHandle link(Method method, MethodHandle handle) {
+        try {
+            return LambdaMetafactory.metafactory(
+                    LOOKUP,
+                    "handle",
+                    methodType(EventSubscriber.class, method.getDeclaringClass()),
+                    SUBSCRIBER_TYPE,
+                    handle,
+                    methodType(void.class, method.getParameterTypes()[0])
+            ).getTarget();
+        } catch (Throwable ignored) {
+            return null;
+        }
+    }
+
+    /**
+     * Returns whether a lambda spun from this class can invoke the specified method directly
+     */
+    private static boolean isLinkable(Method method) {
+        if (!Modifier.isPublic(method.getModifiers()) || !Modifier.isPublic(method.getDeclaringClass().getModifiers()))
+            return false;
+        return isVisible(method.getDeclaringClass()) && isVisible(method.getParameterTypes()[0]);
+    }
+
+    private static boolean isVisible(Class<?> type) {
+        try {
+            return Class.forName(type.getName(), false, EventBus.class.getClassLoader()) == type;
+        } catch (ClassNotFoundException e) {
+            return false;
+        }
+    }
+
+    private static void collectHierarchy(Class<?> type, Set<Class<?>> types) {
+        for (Class<?> c = type; c != null; c = c.getSuperclass()) {
+            types.add(c);
+            for (Class<?> i : c.getInterfaces())
+                collectHierarchy(i, types);
+        }
+    }
+
+    /**
+     * Contains the subscriptions of a single scope
+     */
+    private static final class Bucket {
+
+        /* Guarded by the owning bus */
+        private final Map<Class<?>, List<Subscription>> subscriptions = new HashMap<>();
+        private final Map<Class<?>, Subscription[]> baked = new ConcurrentHashMap<>();
+
+        void invalidate() {
+            baked.clear();
+        }
+    }
+
 }
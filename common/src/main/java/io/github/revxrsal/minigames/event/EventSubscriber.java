@@ -0,0 +1,15 @@
+package io.github.revxrsal.minigames.event;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Represents a compiled handler for events posted to an {@link EventBus}.
+ *
+ * @param <T> The event type
+ */
+@FunctionalInterface
+public interface EventSubscriber<T> {
+
+    void handle(@NotNull T event);
+
+}
@@ -0,0 +1,21 @@
+package io.github.revxrsal.minigames.event;
+
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Represents an event that belongs to a scope, such as an arena.
+ * <p>
+ * Scoped events are delivered to global subscribers and to subscribers registered
+ * for the same scope only.
+ */
+@FunctionalInterface
+public interface Scoped {
+
+    /**
+     * Returns the scope of this event. Can be null to indicate that this event is global.
+     *
+     * @return The event scope
+     */
+    @Nullable Object getScope();
+
+}
@@ -0,0 +1,33 @@
+package io.github.revxrsal.minigames.event;
+
+import org.bukkit.event.EventPriority;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a method as a subscriber to be registered with {@link EventBus#register(Object)}.
+ * <p>
+ * Methods must accept exactly one parameter, which is the event type they listen to.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Subscribe {
+
+    /**
+     * The priority of this subscriber. Subscribers with lower priorities are invoked first.
+     *
+     * @return The priority
+     */
+    EventPriority priority() default EventPriority.NORMAL;
+
+    /**
+     * Whether should this subscriber be skipped if the event has been cancelled
+     *
+     * @return Whether to ignore cancelled events
+     */
+    boolean ignoreCancelled() default false;
+
+}
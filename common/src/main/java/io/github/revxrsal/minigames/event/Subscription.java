@@ -0,0 +1,65 @@
+package io.github.revxrsal.minigames.event;
+
+import org.bukkit.event.EventPriority;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Represents a registered subscriber inside an {@link EventBus}.
+ */
+public final class Subscription {
+
+    final EventBus bus;
+    final Class<?> type;
+    final EventPriority priority;
+    final boolean ignoreCancelled;
+    final EventSubscriber<Object> subscriber;
+    @Nullable final Object scope;
+    @Nullable final Object owner;
+    final long order;
+
+    Subscription(EventBus bus,
+                 Class<?> type,
+                 EventPriority priority,
+                 boolean ignoreCancelled,
+                 EventSubscriber<Object> subscriber,
+                 @Nullable Object scope,
+                 @Nullable Object owner,
+                 long order) {
+        this.bus = bus;
+        this.type = type;
+        this.priority = priority;
+        this.ignoreCancelled = ignoreCancelled;
+        this.subscriber = subscriber;
+        this.scope = scope;
+        this.owner = owner;
+        this.order = order;
+    }
+
+    /**
+     * Removes this subscription from its bus
+     */
+    public void unsubscribe() {
+        bus.unsubscribe(this);
+    }
+
+    @NotNull public Class<?> getType() {
+        return type;
+    }
+
+    @NotNull public EventPriority getPriority() {
+        return priority;
+    }
+
+    public boolean isIgnoreCancelled() {
+        return ignoreCancelled;
+    }
+
+    @Nullable public Object getScope() {
+        return scope;
+    }
+
+    @Override public String toString() {
+        return "Subscription{type=" + type.getName() + ", priority=" + priority + ", scope=" + scope + "}";
+    }
+}
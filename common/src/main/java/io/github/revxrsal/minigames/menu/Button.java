@@ -16,9 +16,12 @@
 package io.github.revxrsal.minigames.menu;
 
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
 import org.jetbrains.annotations.NotNull;
 
 import java.util.List;
+import java.util.Set;
+import java.util.function.Supplier;
 
 import static io.github.revxrsal.minigames.util.Utils.n;
 
@@ -30,22 +33,34 @@ public class Button {
     public static final InventoryClickCallback CANCEL_ACTION = event -> event.setCancelled(true);
     public static final InventoryClickCallback CLOSE_INVENTORY = (event) -> event.getWhoClicked().closeInventory();
 
-    private final Item item;
+    private final Supplier<Item> item;
     private final ImmutableList<InventoryClickCallback> actions;
+    private final ImmutableSet<Object> dependencies;
 
-    private Button(Item item, ImmutableList<InventoryClickCallback> actions) {
+    private Button(Supplier<Item> item, ImmutableList<InventoryClickCallback> actions, ImmutableSet<Object> dependencies) {
         this.item = item;
         this.actions = actions;
+        this.dependencies = dependencies;
     }
 
     public Item getItem() {
-        return item;
+        return item.get();
     }
 
     public List<InventoryClickCallback> getActions() {
         return actions;
     }
 
+    /**
+     * Returns the dependencies of this button. When any of them is invalidated through
+     * {@link InventoryUI#invalidate(Object)}, the button's item is refreshed for all viewers.
+     *
+     * @return The dependencies
+     */
+    public Set<Object> getDependencies() {
+        return dependencies;
+    }
+
     public static Builder builder() {
         return new Builder();
     }
@@ -53,13 +68,33 @@ public class Button {
     public static class Builder {
 
         private final ImmutableList.Builder<InventoryClickCallback> actions = new ImmutableList.Builder<>();
-        private Item item;
+        private final ImmutableSet.Builder<Object> dependencies = new ImmutableSet.Builder<>();
+        private Supplier<Item> item = () -> null;
 
         public Builder item(@NotNull Item item) {
+            n(item, "item");
+            this.item = () -> item;
+            return this;
+        }
+
+        /**
+         * Sets the item of this button to be computed lazily. The item is computed once when
+         * the menu is first displayed, and is then reused for all viewers until one of the
+         * button's dependencies is invalidated or its slot is marked dirty.
+         *
+         * @param item The item supplier
+         * @return This builder
+         */
+        public Builder item(@NotNull Supplier<Item> item) {
             this.item = n(item, "item");
             return this;
         }
 
+        public Builder dependsOn(@NotNull Object... dependencies) {
+            this.dependencies.add(n(dependencies, "dependencies"));
+            return this;
+        }
+
         public Builder handle(@NotNull InventoryClickCallback handle) {
             actions.add(handle);
             return this;
@@ -82,7 +117,7 @@ public class Button {
         }
 
         public Button build() {
-            return new Button(item, actions.build());
+            return new Button(item, actions.build(), dependencies.build());
         }
 
     }
@@ -1,7 +1,8 @@
 package io.github.revxrsal.minigames.menu;
 
+import com.google.common.base.Preconditions;
+import io.github.revxrsal.minigames.MinigamePlugin;
 import io.github.revxrsal.minigames.util.Chat;
-import io.github.revxrsal.minigames.util.Metadata;
 import io.github.revxrsal.minigames.util.Utils;
 import org.bukkit.Bukkit;
 import org.bukkit.entity.HumanEntity;
@@ -11,19 +12,32 @@ import org.bukkit.event.inventory.InventoryClickEvent;
 import org.bukkit.event.inventory.InventoryCloseEvent;
 import org.bukkit.event.inventory.InventoryType;
 import org.bukkit.inventory.Inventory;
+import org.bukkit.inventory.InventoryHolder;
+import org.bukkit.inventory.ItemStack;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
-import java.util.Map.Entry;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiConsumer;
 
 public abstract class InventoryUI {
 
-    private static final Metadata<InventoryUI> OPENED_UI = Metadata.of("opened_menu");
+    /**
+     * Menus that have dirty slots waiting to be flushed
+     */
+    private static final Set<InventoryUI> PENDING = ConcurrentHashMap.newKeySet();
+    private static final AtomicBoolean FLUSH_SCHEDULED = new AtomicBoolean();
+    private static volatile long refreshRate = 2;
 
-    private final Map<Integer, Button> buttons = new HashMap<>();
+    private final Button[] buttons;
+    private final SlotRenderer[] overlays;
+    private int[] overlaySlots = new int[0];
+    private ItemStack[] template;
+    private final Map<Object, BitSet> dependents = new HashMap<>();
+    private final BitSet dirty = new BitSet();
+    private final Set<MenuHolder> viewers = ConcurrentHashMap.newKeySet();
     private final List<InventoryClickCallback> globalActions = new ArrayList<>();
     private final List<InventoryCloseCallback> closeActions = new ArrayList<>();
     private final String title;
@@ -33,10 +47,144 @@ public abstract class InventoryUI {
     public InventoryUI(String title, int size) {
         this.title = Chat.colorize(title);
         this.size = Utils.coerce(size, 1, 6) * 9;
+        buttons = new Button[this.size];
+        overlays = new SlotRenderer[this.size];
     }
 
     protected void register(int slot, @NotNull Button button) {
-        buttons.put(slot, button);
+        Preconditions.checkElementIndex(slot, size, "slot");
+        buttons[slot] = button;
+        template = null;
+        dependOn(slot, button.getDependencies());
+        markDirty(slot);
+    }
+
+    /**
+     * Renders the specified slot separately for each viewer, on top of the shared
+     * contents of this menu.
+     *
+     * @param slot     The slot
+     * @param renderer Renders the item of each viewer
+     */
+    protected void overlay(int slot, @NotNull SlotRenderer renderer) {
+        overlay(slot, renderer, new Object[0]);
+    }
+
+    /**
+     * Renders the specified slot separately for each viewer, and re-renders it whenever
+     * any of the specified dependencies is invalidated.
+     *
+     * @param slot         The slot
+     * @param renderer     Renders the item of each viewer
+     * @param dependencies Dependencies of the slot
+     * @see #invalidate(Object)
+     */
+    protected void overlay(int slot, @NotNull SlotRenderer renderer, @NotNull Object... dependencies) {
+        Preconditions.checkElementIndex(slot, size, "slot");
+        if (overlays[slot] == null) {
+            overlaySlots = Arrays.copyOf(overlaySlots, overlaySlots.length + 1);
+            overlaySlots[overlaySlots.length - 1] = slot;
+        }
+        overlays[slot] = renderer;
+        dependOn(slot, Arrays.asList(dependencies));
+        markDirty(slot);
+    }
+
+    private void dependOn(int slot, Collection<Object> dependencies) {
+        synchronized (dependents) {
+            for (Object dependency : dependencies)
+                dependents.computeIfAbsent(dependency, k -> new BitSet(size)).set(slot);
+        }
+    }
+
+    /**
+     * Marks all the slots that depend on the specified dependency as dirty. Dirty slots
+     * are refreshed for all viewers in the next flush, or when the menu is displayed if it
+     * has no viewers.
+     * <p>
+     * This method is thread-safe.
+     *
+     * @param dependency The dependency that changed
+     * @see #setRefreshRate(long)
+     */
+    public void invalidate(@NotNull Object dependency) {
+        BitSet slots;
+        synchronized (dependents) {
+            slots = dependents.get(dependency);
+            if (slots == null) return;
+            synchronized (dirty) {
+                dirty.or(slots);
+            }
+        }
+        scheduleFlush();
+    }
+
+    /**
+     * Marks the specified slot as dirty, to be refreshed for all viewers in the next flush.
+     * <p>
+     * This method is thread-safe.
+     *
+     * @param slot The slot
+     */
+    public void markDirty(int slot) {
+        Preconditions.checkElementIndex(slot, size, "slot");
+        synchronized (dirty) {
+            dirty.set(slot);
+        }
+        scheduleFlush();
+    }
+
+    /**
+     * Sets how often dirty slots of all menus are flushed
+     *
+     * @param ticks The minimum number of ticks between flushes
+     */
+    public static void setRefreshRate(long ticks) {
+        Preconditions.checkArgument(ticks >= 1, "refresh rate must be at least 1 tick!");
+        refreshRate = ticks;
+    }
+
+    private void scheduleFlush() {
+        if (viewers.isEmpty()) return; // flushed when displayed
+        PENDING.add(this);
+        if (FLUSH_SCHEDULED.compareAndSet(false, true))
+            Bukkit.getScheduler().runTaskLater(MinigamePlugin.getInstance().getPlugin(), InventoryUI::flushAll, refreshRate);
+    }
+
+    private static void flushAll() {
+        FLUSH_SCHEDULED.set(false);
+        for (Iterator<InventoryUI> iterator = PENDING.iterator(); iterator.hasNext(); ) {
+            InventoryUI menu = iterator.next();
+            iterator.remove();
+            menu.flush();
+        }
+    }
+
+    /**
+     * Refreshes the dirty slots of all viewers
+     */
+    private void flush() {
+        BitSet slots;
+        synchronized (dirty) {
+            if (dirty.isEmpty()) return;
+            slots = (BitSet) dirty.clone();
+            dirty.clear();
+        }
+        ItemStack[] template = this.template;
+        if (template != null)
+            for (int slot = slots.nextSetBit(0); slot >= 0; slot = slots.nextSetBit(slot + 1))
+                template[slot] = buttons[slot] == null ? null : createItem(slot, buttons[slot].getItem());
+        template = getTemplate();
+        for (MenuHolder holder : viewers) {
+            for (int slot = slots.nextSetBit(0); slot >= 0; slot = slots.nextSetBit(slot + 1)) {
+                ItemStack item = overlays[slot] == null ? null : overlays[slot].render(holder.viewer);
+                if (item == null) {
+                    if (buttons[slot] == null) continue; // leave items placed by overlays or subclasses
+                    item = template[slot];
+                }
+                holder.inventory.setItem(slot, item);
+            }
+        }
     }
 
     protected void always(@NotNull InventoryClickCallback callback) {
@@ -47,17 +195,80 @@ public abstract class InventoryUI {
         closeActions.add(callback);
     }
 
+    /**
+     * Returns the shared contents of this menu. These are created once and only copied
+     * into the inventories of viewers, so they must never be modified.
+     *
+     * @return The shared contents
+     */
+    private ItemStack[] getTemplate() {
+        if (template == null) {
+            ItemStack[] items = new ItemStack[size];
+            for (int slot = 0; slot < buttons.length; slot++) {
+                if (buttons[slot] != null)
+                    items[slot] = createItem(slot, buttons[slot].getItem());
+            }
+            template = items;
+        }
+        return template;
+    }
+
+    private ItemStack createItem(int slot, Item item) {
+        if (!item.isResolved()) // refresh skulls once their texture is ready
+            item.whenResolved().thenRun(() -> markDirty(slot));
+        return item.createItem();
+    }
+
     protected Inventory createInventory() {
-        Inventory inventory = Bukkit.createInventory(null, size, title);
-        for (Entry<Integer, Button> entry : buttons.entrySet()) {
-            inventory.setItem(entry.getKey(), entry.getValue().getItem().createItem());
+        MenuHolder holder = new MenuHolder(this);
+        Inventory inventory = holder.inventory = Bukkit.createInventory(holder, size, title);
+        inventory.setContents(getTemplate());
+        return inventory;
+    }
+
+    protected Inventory createInventory(@NotNull HumanEntity viewer) {
+        Inventory inventory = createInventory();
+        ((MenuHolder) inventory.getHolder()).viewer = viewer;
+        for (int slot : overlaySlots) {
+            ItemStack item = overlays[slot].render(viewer);
+            if (item != null)
+                inventory.setItem(slot, item);
         }
         return inventory;
     }
 
+    /**
+     * Invokes the specified action for the inventory of each current viewer of this menu.
+     * This must be invoked on the main thread.
+     *
+     * @param action Action to invoke with the viewer and their inventory
+     */
+    protected void forEachViewer(@NotNull BiConsumer<HumanEntity, Inventory> action) {
+        for (MenuHolder holder : viewers)
+            action.accept(holder.viewer, holder.inventory);
+    }
+
+    public int getSize() {
+        return size;
+    }
+
     public void display(@NotNull HumanEntity entity) {
-        entity.openInventory(createInventory());
-        OPENED_UI.set(entity, this);
+        flush();
+        Inventory inventory = createInventory(entity);
+        entity.openInventory(inventory);
+        if (entity.getOpenInventory().getTopInventory() == inventory) // opening may be cancelled
+            viewers.add((MenuHolder) inventory.getHolder());
+    }
+
+    /**
+     * Returns the menu that created the specified inventory
+     *
+     * @param inventory Inventory to check
+     * @return The menu, or null if the inventory is not a menu
+     */
+    public static @Nullable InventoryUI getMenu(@NotNull Inventory inventory) {
+        InventoryHolder holder = inventory.getHolder();
+        return holder instanceof MenuHolder ? ((MenuHolder) holder).menu : null;
     }
 
     protected void onClick(InventoryClickEvent event) {
@@ -69,13 +280,13 @@ public abstract class InventoryUI {
             event.setCancelled(true);
             return;
         }
-        if (!event.getView().getTitle().equals(title)) return;
         if (event.getCurrentItem() == null) return;
         if (cancelAllClicks) event.setCancelled(true);
         for (InventoryClickCallback e : globalActions) {
             e.handle(event);
         }
-        Button button = buttons.get(event.getRawSlot());
+        int slot = event.getRawSlot();
+        Button button = slot >= 0 && slot < buttons.length ? buttons[slot] : null;
         if (button != null && button.getActions() != null) {
             for (InventoryClickCallback task : button.getActions()) {
                 task.handle(event);
@@ -83,21 +294,44 @@ public abstract class InventoryUI {
         }
     }
 
+    /**
+     * The holder of menu inventories, which identifies the menu an inventory belongs to
+     */
+    public static final class MenuHolder implements InventoryHolder {
+
+        private final InventoryUI menu;
+        private Inventory inventory;
+        private HumanEntity viewer;
+
+        private MenuHolder(InventoryUI menu) {
+            this.menu = menu;
+        }
+
+        public InventoryUI getMenu() {
+            return menu;
+        }
+
+        @Override public Inventory getInventory() {
+            return inventory;
+        }
+    }
+
     public static class MenuListener implements Listener {
 
         @EventHandler(ignoreCancelled = true)
         public void onInventoryClick(InventoryClickEvent event) {
-            InventoryUI menu = OPENED_UI.get(event.getWhoClicked());
+            InventoryUI menu = getMenu(event.getInventory());
             if (menu == null) return;
             menu.onClick(event);
         }
 
         @EventHandler(ignoreCancelled = true)
         public void onInventoryClose(InventoryCloseEvent event) {
-            InventoryUI menu = OPENED_UI.get(event.getPlayer());
-            if (menu == null) return;
+            InventoryHolder holder = event.getInventory().getHolder();
+            if (!(holder instanceof MenuHolder)) return;
+            InventoryUI menu = ((MenuHolder) holder).menu;
+            menu.viewers.remove(holder);
             menu.closeActions.forEach(a -> a.handle(event));
-            OPENED_UI.remove(event.getPlayer());
         }
     }
 
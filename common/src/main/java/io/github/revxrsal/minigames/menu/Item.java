@@ -4,6 +4,7 @@ import com.cryptomorin.xseries.SkullUtils;
 import com.cryptomorin.xseries.XEnchantment;
 import com.cryptomorin.xseries.XMaterial;
 import com.google.common.base.Preconditions;
+import com.google.common.collect.MapMaker;
 import io.github.revxrsal.minigames.gson.GsonHook;
 import io.github.revxrsal.minigames.gson.GsonHook.AfterDeserialization;
 import io.github.revxrsal.minigames.util.Chat;
@@ -24,15 +25,26 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentMap;
 import java.util.stream.Collectors;
 
 /**
  * An immutable, fast, and thread-safe wrapper for {@link ItemStack}s.
+ * <p>
+ * Items with identical definitions share a single built {@link ItemStack}, which is never
+ * modified and only handed out as copies. Skulls are built with a plain head when first used,
+ * and their texture is filled in once it is resolved by the {@link SkullCache}.
  */
 @Getter
 @GsonHook
 public class Item {
 
+    /**
+     * The shared stacks of all items. Entries are weakly held, and are dropped once no item uses them.
+     */
+    private static final ConcurrentMap<Definition, Shared> INTERNED = new MapMaker().weakValues().makeMap();
+
     private final XMaterial type;
     @Nullable private final String displayName;
     private final List<String> lore;
@@ -42,9 +54,25 @@ public class Item {
     @Nullable private final UUID skull;
     private final boolean unbreakable;
 
+    /**
+     * The item stack of this item. This is the shared stack, and must never be modified.
+     * A stack assigned by a subclass is used in place of the shared one.
+     *
+     * @deprecated Use {@link #stack()}
+     */
+    @Deprecated
     @Getter(AccessLevel.NONE)
     protected transient ItemStack itemStack;
 
+    @Getter(AccessLevel.NONE)
+    private transient ItemStack published;
+
+    @Getter(AccessLevel.NONE)
+    private transient volatile Shared shared;
+
+    @Getter(AccessLevel.NONE)
+    private transient Definition definition;
+
     protected Item(XMaterial type,
                    @Nullable String displayName,
                    List<String> lore,
@@ -77,7 +105,7 @@ public class Item {
 
     public void give(int slot, Player... players) {
         for (Player player : players)
-            player.getInventory().setItem(slot, itemStack);
+            player.getInventory().setItem(slot, stack());
     }
 
     public void give(Iterable<Player> players) {
@@ -86,7 +114,7 @@ public class Item {
     }
 
     protected void giveItem(Player player) {
-        player.getInventory().addItem(itemStack);
+        player.getInventory().addItem(createItem()); // addItem() modifies the amount of the given item
     }
 
     public Builder asBuilder() {
@@ -99,56 +127,79 @@ public class Item {
 
     @AfterDeserialization
     protected void createItem0() {
-        ItemStack item;
-        if (skull != null) {
-            item = SkullUtils.getSkull(skull);
-        } else
-            item = type.parseItem();
-        int amount = Utils.coerce(count, 1, 64);
-        Objects.requireNonNull(item).setAmount(amount);
-        ItemMeta m = item.getItemMeta();
-        if (m == null) return;
-        if (displayName != null && !displayName.equals("{}")) m.setDisplayName(colorize(displayName));
-        if (lore != null) m.setLore(lore.stream().map(Chat::colorize).collect(Collectors.toList()));
-        if (itemFlags != null) m.addItemFlags(itemFlags);
-        if (unbreakable) {
-            try {
-                m.setUnbreakable(true);
-            } catch (Throwable t) {
-                try {
-                    m.spigot().setUnbreakable(true);
-                } catch (Throwable ignored) {
-                }
-            }
-        }
-        if (enchantments != null)
-            enchantments.forEach((ench, lvl) -> m.addEnchant(ench.parseEnchantment(), lvl, true));
-        item.setItemMeta(m);
-        itemStack = item;
+        definition = new Definition(this);
+        shared = skull == null ? intern(definition) : null; // skulls are resolved when first used
+        itemStack = published = shared == null ? null : shared.stack;
+    }
+
+    /**
+     * Returns the shared item stack of this item. This must never be modified.
+     *
+     * @return The item stack
+     */
+    @SuppressWarnings("deprecation")
+    protected ItemStack stack() {
+        ItemStack legacy = itemStack;
+        if (legacy != null && legacy != published) return legacy; // assigned by a subclass
+        return itemStack = published = shared().stack;
+    }
+
+    private Shared shared() {
+        Shared shared = this.shared;
+        if (shared == null)
+            this.shared = shared = intern(definition);
+        return shared;
+    }
+
+    /**
+     * Returns whether this item is fully built. This is false only for skulls
+     * whose texture is still being resolved.
+     *
+     * @return Whether this item is resolved
+     */
+    public boolean isResolved() {
+        return shared().resolved.isDone();
+    }
+
+    /**
+     * Returns a future that completes once this item is fully built. Items created after
+     * that reflect the resolved skull texture.
+     *
+     * @return The future
+     */
+    public CompletableFuture<Void> whenResolved() {
+        return shared().resolved;
+    }
+
+    private static Shared intern(Definition definition) {
+        Shared shared = INTERNED.get(definition);
+        if (shared != null) return shared;
+        shared = new Shared(definition);
+        Shared existing = INTERNED.putIfAbsent(definition, shared);
+        return existing == null ? shared.resolve() : existing;
     }
 
     public ItemStack withPlaceholders(Object... placeholders) {
-        return setPlaceholders(new ItemStack(itemStack), placeholders);
+        return setPlaceholders(createItem(), placeholders);
     }
 
     public ItemStack createItem() {
-        return new ItemStack(itemStack);
+        return stack().clone();
     }
 
     public boolean isSimilar(@Nullable ItemStack other) {
-        return itemStack.isSimilar(other);
+        return stack().isSimilar(other);
     }
 
     @Override public boolean equals(Object o) {
         if (this == o) return true;
         if (o instanceof ItemStack) return isSimilar(((ItemStack) o));
         if (!(o instanceof Item)) return false;
-        Item item = (Item) o;
-        return itemStack.isSimilar(item.itemStack);
+        return definition.equals(((Item) o).definition);
     }
 
     @Override public int hashCode() {
-        return Objects.hash(itemStack);
+        return definition.hashCode(); // not the stack, which changes once a skull is resolved
     }
 
     @Getter
@@ -162,7 +213,112 @@ public class Item {
         }
 
         @Override protected void giveItem(Player player) {
-            player.getInventory().setItem(slot, itemStack);
+            player.getInventory().setItem(slot, stack());
+        }
+    }
+
+    /**
+     * The item stack shared between items with identical definitions
+     */
+    private static final class Shared {
+
+        private final Definition definition;
+        private final CompletableFuture<Void> resolved = new CompletableFuture<>();
+        private volatile ItemStack stack;
+
+        private Shared(Definition definition) {
+            this.definition = definition;
+            stack = definition.build(definition.skull == null ? null : SkullCache.getTexture(definition.skull), false);
+        }
+
+        private Shared resolve() {
+            if (definition.skull == null || SkullCache.getTexture(definition.skull) != null) {
+                resolved.complete(null);
+                return this;
+            }
+            SkullCache.resolve(definition.skull).whenComplete((texture, error) -> {
+                // if the texture cannot be fetched, leave it to the server to resolve the owner
+                stack = definition.build(texture, texture == null);
+                resolved.complete(null);
+            });
+            return this;
+        }
+    }
+
+    /**
+     * The content of an item, which identifies items that build identical item stacks
+     */
+    private static final class Definition {
+
+        private final XMaterial type;
+        private final String displayName;
+        private final List<String> lore;
+        private final int count;
+        private final Map<XEnchantment, Integer> enchantments;
+        private final Set<ItemFlag> itemFlags;
+        private final UUID skull;
+        private final boolean unbreakable;
+        private final int hash;
+
+        private Definition(Item item) {
+            type = item.type;
+            displayName = item.displayName == null || item.displayName.equals("{}") ? null : item.displayName;
+            lore = item.lore == null ? null : new ArrayList<>(item.lore);
+            count = Utils.coerce(item.count, 1, 64);
+            enchantments = item.enchantments == null ? null : new HashMap<>(item.enchantments);
+            itemFlags = item.itemFlags == null ? null : new HashSet<>(Arrays.asList(item.itemFlags));
+            skull = item.skull;
+            unbreakable = item.unbreakable;
+            hash = Objects.hash(type, displayName, lore, count, enchantments, itemFlags, skull, unbreakable);
+        }
+
+        private ItemStack build(@Nullable String texture, boolean withOwner) {
+            ItemStack item = skull == null ? type.parseItem() : XMaterial.PLAYER_HEAD.parseItem();
+            Objects.requireNonNull(item).setAmount(count);
+            ItemMeta meta = item.getItemMeta();
+            if (meta == null) return item;
+            ItemMeta m;
+            if (texture != null)
+                m = SkullUtils.getSkullByValue((SkullMeta) meta, texture);
+            else if (withOwner)
+                m = SkullUtils.applySkin(meta, skull);
+            else
+                m = meta;
+            if (displayName != null) m.setDisplayName(colorize(displayName));
+            if (lore != null) {
+                List<String> colorized = new ArrayList<>(lore.size());
+                for (String line : lore) colorized.add(Chat.colorize(line));
+                m.setLore(colorized);
+            }
+            if (itemFlags != null) m.addItemFlags(itemFlags.toArray(new ItemFlag[0]));
+            if (unbreakable) {
+                try {
+                    m.setUnbreakable(true);
+                } catch (Throwable t) {
+                    try {
+                        m.spigot().setUnbreakable(true);
+                    } catch (Throwable ignored) {
+                    }
+                }
+            }
+            if (enchantments != null)
+                enchantments.forEach((ench, lvl) -> m.addEnchant(ench.parseEnchantment(), lvl, true));
+            item.setItemMeta(m);
+            return item;
+        }
+
+        @Override public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Definition)) return false;
+            Definition d = (Definition) o;
+            return hash == d.hash && count == d.count && unbreakable == d.unbreakable && type == d.type
+                    && Objects.equals(displayName, d.displayName) && Objects.equals(lore, d.lore)
+                    && Objects.equals(enchantments, d.enchantments) && Objects.equals(itemFlags, d.itemFlags)
+                    && Objects.equals(skull, d.skull);
+        }
+
+        @Override public int hashCode() {
+            return hash;
         }
     }
 
@@ -0,0 +1,223 @@
+package io.github.revxrsal.minigames.menu;
+
+import com.cryptomorin.xseries.XMaterial;
+import com.google.common.base.Preconditions;
+import io.github.revxrsal.minigames.MinigamePlugin;
+import org.bukkit.Bukkit;
+import org.bukkit.entity.HumanEntity;
+import org.bukkit.event.inventory.InventoryClickEvent;
+import org.bukkit.inventory.Inventory;
+import org.bukkit.inventory.ItemStack;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A menu that displays a large list of entries across multiple pages.
+ * <p>
+ * Only the pages that are viewed get built, and they are cached so that flipping back
+ * and forth reuses the same items. The pages next to the one being viewed are built
+ * asynchronously ahead of time. The last row of the menu is reserved for navigation.
+ *
+ * @param <T> The entry type
+ */
+public abstract class PaginatedUI<T> extends InventoryUI {
+
+    /**
+     * The maximum number of built pages to keep
+     */
+    private static final int CACHED_PAGES = 8;
+
+    private final int pageSize;
+    private final Map<UUID, Integer> pages = new ConcurrentHashMap<>();
+    private final Map<Integer, CompletableFuture<ItemStack[]>> built = new LinkedHashMap<Integer, CompletableFuture<ItemStack[]>>(16, 0.75f, true) {
+        @Override protected boolean removeEldestEntry(Map.Entry<Integer, CompletableFuture<ItemStack[]>> eldest) {
+            return size() > CACHED_PAGES;
+        }
+    };
+    private final Set<Integer> refreshing = ConcurrentHashMap.newKeySet();
+    private volatile List<? extends T> entries;
+
+    public PaginatedUI(String title, int size, @NotNull List<? extends T> entries) {
+        super(title, size);
+        Preconditions.checkArgument(getSize() >= 18, "paginated menus must have at least 2 rows!");
+        this.entries = Objects.requireNonNull(entries, "entries is null!");
+        pageSize = getSize() - 9;
+        cancelAllClicks = true;
+        // resolved lazily, as subclasses are not initialized yet
+        register(pageSize + 3, Button.builder().item(this::previousPageItem).handle(e -> flip(e, -1)).build());
+        register(pageSize + 5, Button.builder().item(this::nextPageItem).handle(e -> flip(e, 1)).build());
+        whenClosed(e -> pages.remove(e.getPlayer().getUniqueId()));
+    }
+
+    /**
+     * Creates the item of the specified entry. This may be invoked asynchronously.
+     *
+     * @param entry The entry
+     * @return The item to display
+     */
+    protected abstract @NotNull Item render(@NotNull T entry);
+
+    /**
+     * Invoked when an entry is clicked
+     *
+     * @param event The click event
+     * @param entry The clicked entry
+     */
+    protected abstract void onSelect(@NotNull InventoryClickEvent event, @NotNull T entry);
+
+    /**
+     * Returns the item of the previous page button. This is invoked when the menu is
+     * displayed, not from the constructor, so it may depend on subclass fields.
+     *
+     * @return The previous page item
+     */
+    protected Item previousPageItem() {
+        return Item.builder().type(XMaterial.ARROW).name("&ePrevious Page").build();
+    }
+
+    /**
+     * Returns the item of the next page button
+     *
+     * @return The next page item
+     * @see #previousPageItem()
+     */
+    protected Item nextPageItem() {
+        return Item.builder().type(XMaterial.ARROW).name("&eNext Page").build();
+    }
+
+    /**
+     * Replaces the entries of this menu. Viewers see the new entries when they flip pages
+     * or when the menu is displayed again.
+     *
+     * @param entries The new entries
+     */
+    public void setEntries(@NotNull List<? extends T> entries) {
+        this.entries = Objects.requireNonNull(entries, "entries is null!");
+        synchronized (built) {
+            built.clear();
+        }
+    }
+
+    public int getPageCount() {
+        return Math.max(1, (entries.size() + pageSize - 1) / pageSize);
+    }
+
+    /**
+     * Displays the menu to the specified entity at the specified page
+     *
+     * @param entity The entity
+     * @param page   The page, starting from 0
+     */
+    public void display(@NotNull HumanEntity entity, int page) {
+        pages.put(entity.getUniqueId(), page);
+        display(entity);
+    }
+
+    @Override protected Inventory createInventory(@NotNull HumanEntity viewer) {
+        Inventory inventory = super.createInventory(viewer);
+        int page = Math.min(pages.getOrDefault(viewer.getUniqueId(), 0), getPageCount() - 1);
+        pages.put(viewer.getUniqueId(), page);
+        show(inventory, page);
+        return inventory;
+    }
+
+    @Override protected void onClick(InventoryClickEvent event) {
+        super.onClick(event);
+        int slot = event.getRawSlot();
+        if (slot < 0 || slot >= pageSize || event.getCurrentItem() == null) return;
+        int index = pages.getOrDefault(event.getWhoClicked().getUniqueId(), 0) * pageSize + slot;
+        List<? extends T> entries = this.entries;
+        if (index < entries.size())
+            onSelect(event, entries.get(index));
+    }
+
+    private void flip(InventoryClickEvent event, int by) {
+        UUID uuid = event.getWhoClicked().getUniqueId();
+        int current = pages.getOrDefault(uuid, 0);
+        int page = Math.max(0, Math.min(getPageCount() - 1, current + by));
+        if (page == current) return;
+        pages.put(uuid, page);
+        show(event.getInventory(), page);
+    }
+
+    private void show(Inventory inventory, int page) {
+        ItemStack[] items = getPage(page);
+        for (int slot = 0; slot < pageSize; slot++)
+            inventory.setItem(slot, items[slot]);
+        prefetch(page + 1);
+        prefetch(page - 1);
+    }
+
+    private ItemStack[] getPage(int page) {
+        CompletableFuture<ItemStack[]> future;
+        synchronized (built) {
+            future = built.computeIfAbsent(page, k -> new CompletableFuture<>());
+        }
+        if (!future.isDone())
+            future.complete(build(page));
+        if (future.isCompletedExceptionally()) { // the prefetch failed, so build it here instead
+            synchronized (built) {
+                built.remove(page, future);
+            }
+            return getPage(page);
+        }
+        return future.join();
+    }
+
+    private void prefetch(int page) {
+        if (page < 0 || page >= getPageCount()) return;
+        CompletableFuture<ItemStack[]> future;
+        synchronized (built) {
+            if (built.containsKey(page)) return;
+            built.put(page, future = new CompletableFuture<>());
+        }
+        MinigamePlugin.THREAD_POOL.execute(() -> {
+            try {
+                future.complete(build(page));
+            } catch (Throwable t) {
+                synchronized (built) {
+                    built.remove(page, future);
+                }
+                future.completeExceptionally(t);
+                MinigamePlugin.getInstance().warn("Failed to build page " + page + " of a paginated menu:");
+                t.printStackTrace();
+            }
+        });
+    }
+
+    private ItemStack[] build(int page) {
+        List<? extends T> entries = this.entries;
+        ItemStack[] items = new ItemStack[pageSize];
+        int offset = page * pageSize;
+        for (int slot = 0; slot < pageSize && offset + slot < entries.size(); slot++) {
+            Item item = render(entries.get(offset + slot));
+            if (!item.isResolved()) // rebuild the page once skull textures are ready
+                item.whenResolved().thenRun(() -> refresh(page));
+            items[slot] = item.createItem();
+        }
+        return items;
+    }
+
+    /**
+     * Evicts the specified page and shows it again to everyone viewing it
+     *
+     * @param page The page to refresh
+     */
+    private void refresh(int page) {
+        synchronized (built) {
+            built.remove(page);
+        }
+        if (!refreshing.add(page)) return; // already scheduled by another item of the page
+        Bukkit.getScheduler().runTask(MinigamePlugin.getInstance().getPlugin(), () -> {
+            refreshing.remove(page);
+            forEachViewer((viewer, inventory) -> {
+                if (viewer != null && pages.getOrDefault(viewer.getUniqueId(), 0) == page)
+                    show(inventory, page);
+            });
+        });
+    }
+
+}
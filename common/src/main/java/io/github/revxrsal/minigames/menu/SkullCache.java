@@ -0,0 +1,213 @@
+package io.github.revxrsal.minigames.menu;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import io.github.revxrsal.minigames.MinigamePlugin;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+
+/**
+ * A cache for the skin textures of player heads.
+ * <p>
+ * Textures are fetched asynchronously from Mojang's session server and saved to the data
+ * folder, so they do not have to be fetched again after a restart. Saved textures are
+ * fetched again in the background once they are older than a week, in case the player
+ * changed their skin.
+ */
+public final class SkullCache {
+
+    private static final String PROFILE_URL = "https://sessionserver.mojang.com/session/minecraft/profile/";
+    private static final String FILE_NAME = "skulls.properties";
+    private static final long MAX_AGE = TimeUnit.DAYS.toMillis(7);
+    private static final int TIMEOUT = 5000;
+
+    private static final Map<UUID, Texture> TEXTURES = new ConcurrentHashMap<>();
+    private static final Map<UUID, CompletableFuture<String>> FETCHING = new ConcurrentHashMap<>();
+    private static final AtomicBoolean SAVE_SCHEDULED = new AtomicBoolean();
+    private static volatile CompletableFuture<Void> loading;
+
+    private SkullCache() {
+        throw new AssertionError(SkullCache.class.getName() + " cannot be initiated!");
+    }
+
+    /**
+     * Returns the cached texture of the specified player. This never blocks, and returns
+     * null if the saved textures are still being loaded.
+     *
+     * @param uuid The player UUID
+     * @return The base64 texture value, or null if it is not cached
+     */
+    public static @Nullable String getTexture(@NotNull UUID uuid) {
+        load();
+        Texture texture = TEXTURES.get(uuid);
+        if (texture == null) return null;
+        if (System.currentTimeMillis() - texture.fetchedAt > MAX_AGE)
+            fetch(uuid);
+        return texture.value;
+    }
+
+    /**
+     * Returns the texture of the specified player, fetching it if it is not cached.
+     *
+     * @param uuid The player UUID
+     * @return A future of the base64 texture value. Completes with null if the player has no skin.
+     */
+    public static CompletableFuture<String> resolve(@NotNull UUID uuid) {
+        String texture = getTexture(uuid);
+        if (texture != null) return CompletableFuture.completedFuture(texture);
+        return load().thenCompose(v -> {
+            String saved = getTexture(uuid);
+            return saved != null ? CompletableFuture.completedFuture(saved) : fetch(uuid);
+        });
+    }
+
+    private static CompletableFuture<String> fetch(UUID uuid) {
+        CompletableFuture<String> future = new CompletableFuture<>();
+        CompletableFuture<String> existing = FETCHING.putIfAbsent(uuid, future);
+        if (existing != null) return existing;
+        MinigamePlugin.THREAD_POOL.execute(() -> {
+            try {
+                String value = request(uuid);
+                if (value != null) {
+                    TEXTURES.put(uuid, new Texture(value, System.currentTimeMillis()));
+                    scheduleSave();
+                }
+                future.complete(value);
+            } catch (Throwable t) {
+                future.completeExceptionally(t);
+            } finally {
+                FETCHING.remove(uuid, future);
+            }
+        });
+        return future;
+    }
+
+    private static @Nullable String request(UUID uuid) throws IOException {
+        URL url = new URL(PROFILE_URL + uuid.toString().replace("-", ""));
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        connection.setConnectTimeout(TIMEOUT);
+        connection.setReadTimeout(TIMEOUT);
+        try {
+            if (connection.getResponseCode() != HttpURLConnection.HTTP_OK) return null;
+            try (Reader reader = new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8)) {
+                JsonObject profile = new JsonParser().parse(reader).getAsJsonObject();
+                JsonArray properties = profile.getAsJsonArray("properties");
+                if (properties == null) return null;
+                for (JsonElement property : properties) {
+                    JsonObject p = property.getAsJsonObject();
+                    if (p.get("name").getAsString().equals("textures"))
+                        return p.get("value").getAsString();
+                }
+                return null;
+            }
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    private static Path file() {
+        return MinigamePlugin.getInstance().getDataFolder().toPath().resolve(FILE_NAME);
+    }
+
+    /**
+     * Loads the saved textures from the data folder asynchronously. This is invoked when
+     * the plugin loads, and only reads the file once.
+     *
+     * @return A future that completes once the saved textures are loaded
+     */
+    public static CompletableFuture<Void> load() {
+        CompletableFuture<Void> loading = SkullCache.loading;
+        if (loading != null) return loading;
+        synchronized (TEXTURES) {
+            if (SkullCache.loading == null)
+                SkullCache.loading = CompletableFuture.runAsync(SkullCache::read, MinigamePlugin.THREAD_POOL);
+            return SkullCache.loading;
+        }
+    }
+
+    private static void read() {
+        synchronized (TEXTURES) {
+            Path file = file();
+            if (!Files.exists(file)) return;
+            Properties properties = new Properties();
+            try (InputStream in = Files.newInputStream(file)) {
+                properties.load(in);
+            } catch (IOException e) {
+                MinigamePlugin.getInstance().warn("Failed to read " + FILE_NAME + ", skulls will be fetched again.");
+                return;
+            }
+            for (String key : properties.stringPropertyNames()) {
+                String entry = properties.getProperty(key);
+                int separator = entry.indexOf(':');
+                if (separator == -1) continue;
+                try {
+                    TEXTURES.putIfAbsent(UUID.fromString(key),
+                            new Texture(entry.substring(separator + 1), Long.parseLong(entry.substring(0, separator))));
+                } catch (IllegalArgumentException ignored) {
+                }
+            }
+        }
+    }
+
+    private static void scheduleSave() {
+        if (SAVE_SCHEDULED.compareAndSet(false, true))
+            MinigamePlugin.SCHEDULED_SERVICE.schedule(SkullCache::save, 5, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Saves all the cached textures to the data folder
+     */
+    public static void save() {
+        SAVE_SCHEDULED.set(false);
+        CompletableFuture<Void> loading = SkullCache.loading;
+        if (loading == null || TEXTURES.isEmpty()) return;
+        if (!loading.isDone()) { // do not overwrite textures that are not read yet
+            loading.thenRun(SkullCache::scheduleSave);
+            return;
+        }
+        Properties properties = new Properties();
+        TEXTURES.forEach((uuid, texture) -> properties.setProperty(uuid.toString(), texture.fetchedAt + ":" + texture.value));
+        synchronized (TEXTURES) {
+            Path file = file();
+            Path temp = file.resolveSibling(FILE_NAME + ".tmp");
+            try {
+                try (OutputStream out = Files.newOutputStream(temp)) {
+                    properties.store(out, "Cached skull textures. Safe to delete.");
+                }
+                Files.move(temp, file, REPLACE_EXISTING);
+            } catch (IOException e) {
+                MinigamePlugin.getInstance().warn("Failed to save " + FILE_NAME + ":");
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private static final class Texture {
+
+        private final String value;
+        private final long fetchedAt;
+
+        Texture(String value, long fetchedAt) {
+            this.value = value;
+            this.fetchedAt = fetchedAt;
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package io.github.revxrsal.minigames.menu;
+
+import org.bukkit.entity.HumanEntity;
+import org.bukkit.inventory.ItemStack;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Renders the item of a menu slot that differs for each viewer
+ */
+@FunctionalInterface
+public interface SlotRenderer {
+
+    /**
+     * Returns the item to display in the slot for the specified viewer
+     *
+     * @param viewer The viewer
+     * @return The item, or null to display the shared item of the slot
+     */
+    @Nullable ItemStack render(@NotNull HumanEntity viewer);
+
+}
@@ -1,12 +1,18 @@
 package io.github.revxrsal.minigames.message.message;
 
+import com.comphenix.protocol.wrappers.EnumWrappers.ChatType;
+import com.comphenix.protocol.wrappers.WrappedChatComponent;
+import io.github.revxrsal.minigames.packet.ChatPacket;
 import io.github.revxrsal.minigames.util.Chat;
 import io.github.revxrsal.minigames.MinigamePlugin;
+import io.github.revxrsal.minigames.util.PlaceholderTemplate;
 import io.github.revxrsal.minigames.util.Placeholders;
 import org.bukkit.command.CommandSender;
+import org.bukkit.entity.Player;
 import org.jetbrains.annotations.NotNull;
 
 import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Stream;
 
 /**
@@ -29,17 +35,29 @@ public class Message {
         MinigamePlugin.getMessageManager().registerMessage(this);
     }
 
+    /**
+     * The cache of rendered messages
+     */
+    private static final RenderCache CACHE = new RenderCache(2048, 1, TimeUnit.SECONDS);
+
     public String build(boolean flatten, Object... formats) {
-        String value = getValue();
+        Object[] args = flatten ? flat(formats) : formats;
+        return CACHE.get(this, args, value -> render(value, args));
+    }
+
+    private static String render(String value, Object[] formats) {
+        return Placeholders.on(withPrefix(value, formats), formats);
+    }
+
+    private static String withPrefix(String value, Object[] formats) {
         if (!value.contains("[noprefix]")) {
             for (Object f : formats) {
                 if (f instanceof Prefixable) {
-                    value = "[noprefix]" + ((Prefixable) f).getPrefix() + value;
-                    break;
+                    return "[noprefix]" + ((Prefixable) f).getPrefix() + value;
                 }
             }
         }
-        return Placeholders.on(value, flatten ? flatten(formats).toArray() : formats);
+        return value;
     }
 
     public @NotNull String create(Object... formats) {
@@ -56,6 +74,12 @@ public class Message {
         return Arrays.stream(array).flatMap(o -> o instanceof Object[] ? flatten((Object[]) o) : Stream.of(o));
     }
 
+    private static Object[] flat(Object[] array) {
+        for (Object o : array)
+            if (o instanceof Object[]) return flatten(array).toArray();
+        return array;
+    }
+
     public String getValue() {
         return value == null ? value = defaultValue : value;
     }
@@ -77,7 +101,7 @@ public class Message {
     }
 
     public void setValue(String value) {
-        this.value = value;
+        this.value = value; // cached renderings of the old value are no longer returned
     }
 
     public void reply(CommandSender cs, Object... formats) {
@@ -86,7 +110,7 @@ public class Message {
 
     public void reply(boolean flatten, CommandSender cs, Object... formats) {
         if (getValue().equals("{}")) return;
-        String text = build(flatten, flatten(formats).toArray());
+        String text = build(flatten, flat(formats));
         if (text.contains("[noprefix]"))
             text = text.replace("[noprefix]", "");
         else
@@ -94,6 +118,43 @@ public class Message {
         cs.sendMessage(Chat.colorize(text));
     }
 
+    /**
+     * Sends this message to all the specified viewers.
+     * <p>
+     * Placeholders that can be filled from the specified formats are rendered only once, and the
+     * remaining ones are filled from each viewer (such as {@code %player_name%}). If nothing
+     * depends on the viewer, the message is sent to all players as a single prebuilt packet.
+     *
+     * @param viewers Viewers to send to
+     * @param formats Formats to fill placeholders from
+     */
+    public void broadcast(@NotNull Iterable<? extends CommandSender> viewers, Object... formats) {
+        if (getValue().equals("{}")) return;
+        Object[] args = flat(formats);
+        String value = withPrefix(getValue(), args);
+        if (value.contains("[noprefix]"))
+            value = value.replace("[noprefix]", "");
+        else
+            value = prefix.getValue() + value;
+        PlaceholderTemplate template = PlaceholderTemplate.compile(value).bind(args);
+        if (!template.isConstant()) {
+            for (CommandSender viewer : viewers)
+                viewer.sendMessage(template.render(viewer));
+            return;
+        }
+        String text = template.render();
+        ChatPacket packet = null;
+        for (CommandSender viewer : viewers) {
+            if (!(viewer instanceof Player)) {
+                viewer.sendMessage(text);
+                continue;
+            }
+            if (packet == null)
+                packet = new ChatPacket().setMessage(WrappedChatComponent.fromText(text)).setChatType(ChatType.SYSTEM);
+            packet.sendPacket((Player) viewer);
+        }
+    }
+
     @Override public String toString() {
         return create();
     }
@@ -101,6 +162,16 @@ public class Message {
     public static void load() {
     }
 
+    /**
+     * Returns the cache of rendered messages. Renderings are keyed by the message and its
+     * immutable arguments, and expire after one second by default.
+     *
+     * @return The render cache
+     */
+    public static RenderCache getCache() {
+        return CACHE;
+    }
+
     private static Message prefix;
 
     public static void setPrefix(Message prefix) {
@@ -3,11 +3,13 @@ package io.github.revxrsal.minigames.message.message;
 import io.github.revxrsal.minigames.message.CommentedConfiguration;
 import io.github.revxrsal.minigames.MinigamePlugin;
 import org.bukkit.ChatColor;
+import org.bukkit.configuration.InvalidConfigurationException;
 
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Class for managing all messages
@@ -43,13 +45,48 @@ public class MessageManager {
             }
             save(); // add any missing messages
         } else {
-            config = CommentedConfiguration.loadConfiguration(messagesFile);
-            for (Message message : messages) {
-                message.setValue(config.getString(message.getKey(), message.getDefaultValue()));
-            }
+            apply(CommentedConfiguration.loadConfiguration(messagesFile));
+        }
+    }
+
+    /**
+     * Reloads all messages. The file is parsed asynchronously, and all messages are then
+     * updated at once on the main thread. If the file cannot be parsed, a warning is logged
+     * and the current messages are kept.
+     *
+     * @return A future that completes when the messages are updated
+     */
+    public CompletableFuture<Void> reloadAsync() {
+        return CompletableFuture.supplyAsync(this::parse, MinigamePlugin.THREAD_POOL)
+                .thenAcceptAsync(config -> {
+                    if (config != null) apply(config);
+                }, MinigamePlugin.getInstance().getMainThread());
+    }
+
+    private CommentedConfiguration parse() {
+        CommentedConfiguration config = new CommentedConfiguration();
+        try {
+            config.load(messagesFile);
+            return config;
+        } catch (IOException | InvalidConfigurationException e) {
+            MinigamePlugin.getInstance().warn("Failed to reload " + messagesFile.getName() + ", keeping the current messages:");
+            e.printStackTrace();
+            return null;
         }
     }
 
+    private void apply(CommentedConfiguration config) {
+        this.config = config;
+        for (Message message : messages) {
+            message.setValue(config.getString(message.getKey(), message.getDefaultValue()));
+        }
+        Message.getCache().invalidateAll();
+    }
+
+    public File getFile() {
+        return messagesFile;
+    }
+
     /**
      * Saves all messages
      */
@@ -0,0 +1,196 @@
+package io.github.revxrsal.minigames.message.message;
+
+import com.google.common.base.Preconditions;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableSet;
+import org.jetbrains.annotations.NotNull;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * A bounded cache for rendered {@link Message}s.
+ * <p>
+ * Entries are keyed by the message and the arguments it was rendered with, and expire after
+ * a short time so that placeholders which depend on changing state do not go stale. Least
+ * recently used entries are evicted when the cache is full.
+ * <p>
+ * Only renderings whose arguments are immutable values, such as strings, numbers, enums and
+ * UUIDs, are cached. Renderings with any other argument, such as a player, are never cached,
+ * so the cache does not keep those objects in memory.
+ * <p>
+ * The cache is cleared whenever messages are reloaded through {@link MessageManager#load(boolean)}.
+ * A rendering of a message is also never returned after the value of the message changes.
+ */
+public final class RenderCache {
+
+    private static final Set<Class<?>> IMMUTABLE = ImmutableSet.of(
+            String.class, Boolean.class, Character.class, Byte.class, Short.class, Integer.class,
+            Long.class, Float.class, Double.class, BigInteger.class, BigDecimal.class, UUID.class
+    );
+
+    private final int maximumSize;
+    private final AtomicLong generation = new AtomicLong();
+    private volatile Cache<Key, Entry> entries;
+    private volatile boolean enabled = true;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    RenderCache(int maximumSize, long ttl, TimeUnit unit) {
+        this.maximumSize = maximumSize;
+        entries = create(ttl, unit);
+    }
+
+    private Cache<Key, Entry> create(long ttl, TimeUnit unit) {
+        return CacheBuilder.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttl, unit)
+                .<Key, Entry>removalListener(n -> {
+                    if (n.wasEvicted()) evictions.increment();
+                })
+                .build();
+    }
+
+    /**
+     * Returns the cached rendering of the specified message, or renders and caches it.
+     *
+     * @param message The message
+     * @param args    Arguments the message is rendered with
+     * @param render  Renders the specified value of the message if it is not cached
+     * @return The rendered text
+     */
+    String get(Message message, Object[] args, Function<String, String> render) {
+        String source = message.getValue();
+        if (!enabled || !isCacheable(args)) return render.apply(source);
+        Key key = new Key(message, args.clone());
+        long generation = this.generation.get();
+        Cache<Key, Entry> entries = this.entries;
+        Entry entry = entries.getIfPresent(key);
+        if (entry != null && entry.generation == generation && entry.source == source) {
+            hits.increment();
+            return entry.value;
+        }
+        misses.increment();
+        String value = render.apply(source);
+        // stamped with the generation it was rendered in, so an invalidation during rendering is not undone
+        entries.put(key, new Entry(value, source, generation));
+        return value;
+    }
+
+    private static boolean isCacheable(Object[] args) {
+        for (Object arg : args)
+            if (arg != null && !(arg instanceof Enum) && !IMMUTABLE.contains(arg.getClass()))
+                return false;
+        return true;
+    }
+
+    /**
+     * Removes all cached renderings
+     */
+    public void invalidateAll() {
+        generation.incrementAndGet();
+        entries.invalidateAll();
+    }
+
+    /**
+     * Removes all cached renderings of the specified message. Changing the value of a message
+     * already does this implicitly.
+     *
+     * @param message Message to invalidate
+     */
+    public void invalidate(@NotNull Message message) {
+        entries.asMap().keySet().removeIf(key -> key.message == message);
+    }
+
+    /**
+     * Sets how long renderings stay cached
+     *
+     * @param ttl  The time to live
+     * @param unit The time unit
+     */
+    public void setTimeToLive(long ttl, @NotNull TimeUnit unit) {
+        Preconditions.checkArgument(ttl >= 0, "ttl cannot be negative!");
+        generation.incrementAndGet();
+        entries = create(ttl, unit);
+    }
+
+    /**
+     * Sets whether this cache is enabled or not
+     *
+     * @param enabled Whether to cache renderings
+     */
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+        if (!enabled) invalidateAll();
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    public int size() {
+        return (int) entries.size();
+    }
+
+    @Override public String toString() {
+        long hits = getHits(), misses = getMisses();
+        long total = hits + misses;
+        return "RenderCache{size=" + size() + ", hits=" + hits + ", misses=" + misses + ", evictions=" + getEvictions()
+                + ", hitRate=" + (total == 0 ? 0 : hits * 100 / total) + "%}";
+    }
+
+    private static final class Key {
+
+        private final Message message;
+        private final Object[] args;
+        private final int hash;
+
+        Key(Message message, Object[] args) {
+            this.message = message;
+            this.args = args;
+            hash = 31 * System.identityHashCode(message) + Arrays.hashCode(args);
+        }
+
+        @Override public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key key = (Key) o;
+            return message == key.message && hash == key.hash && Arrays.equals(args, key.args);
+        }
+
+        @Override public int hashCode() {
+            return hash;
+        }
+    }
+
+    private static final class Entry {
+
+        private final String value;
+        private final String source;
+        private final long generation;
+
+        Entry(String value, String source, long generation) {
+            this.value = value;
+            this.source = source;
+            this.generation = generation;
+        }
+    }
+}
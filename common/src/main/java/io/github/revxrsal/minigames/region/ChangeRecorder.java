@@ -0,0 +1,326 @@
+package io.github.revxrsal.minigames.region;
+
+import com.google.common.base.Preconditions;
+import io.github.revxrsal.minigames.worldedit.PasteFuture;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.bukkit.block.BlockFace;
+import org.bukkit.block.BlockState;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.block.*;
+import org.bukkit.event.entity.EntityChangeBlockEvent;
+import org.bukkit.event.entity.EntityExplodeEvent;
+import org.bukkit.event.player.PlayerBucketEmptyEvent;
+import org.bukkit.event.player.PlayerBucketFillEvent;
+import org.bukkit.event.world.StructureGrowEvent;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Records the blocks that change inside a region, so that the region can be reset by
+ * restoring only the blocks that changed instead of pasting its schematic again.
+ * <p>
+ * The original state of a block is recorded the first time it changes while the recorder
+ * is started. Changes made by players, buckets, explosions, fire, liquids, pistons, entities,
+ * growth and sponges are recorded automatically, along with the blocks next to every broken,
+ * burnt or exploded block, which covers attached blocks that drop with it such as torches,
+ * signs, plants and the other half of doors and beds.
+ * <p>
+ * Blocks that drop further away, such as the rest of a sugar cane or cactus column, are not
+ * covered, nor are changes made by other plugins or commands. These should be recorded with
+ * {@link #record(Block)} before they are made.
+ */
+public final class ChangeRecorder {
+
+    /**
+     * The number of blocks restored in every slice of a restore that spans ticks
+     */
+    private static final int BLOCKS_PER_SLICE = 256;
+
+    /**
+     * The faces of blocks that may drop along with a block that is removed
+     */
+    private static final BlockFace[] ADJACENT = {
+            BlockFace.UP, BlockFace.DOWN, BlockFace.NORTH, BlockFace.SOUTH, BlockFace.EAST, BlockFace.WEST
+    };
+
+    private static final List<ChangeRecorder> RECORDING = new CopyOnWriteArrayList<>();
+
+    private final World world;
+    private final int minX, minY, minZ, maxX, maxY, maxZ;
+    private final Map<Long, BlockState> changes = new HashMap<>();
+
+    /**
+     * Creates a recorder for the region between the specified corners
+     *
+     * @param a The first corner
+     * @param b The second corner
+     */
+    public ChangeRecorder(@NotNull Location a, @NotNull Location b) {
+        Preconditions.checkArgument(Objects.equals(a.getWorld(), b.getWorld()), "Corners must be in the same world!");
+        this.world = Objects.requireNonNull(a.getWorld(), "world is null!");
+        minX = Math.min(a.getBlockX(), b.getBlockX());
+        minY = Math.min(a.getBlockY(), b.getBlockY());
+        minZ = Math.min(a.getBlockZ(), b.getBlockZ());
+        maxX = Math.max(a.getBlockX(), b.getBlockX());
+        maxY = Math.max(a.getBlockY(), b.getBlockY());
+        maxZ = Math.max(a.getBlockZ(), b.getBlockZ());
+    }
+
+    /**
+     * Starts recording changes
+     */
+    public void start() {
+        if (!RECORDING.contains(this))
+            RECORDING.add(this);
+    }
+
+    /**
+     * Stops recording changes. Recorded changes are kept until they are restored.
+     */
+    public void stop() {
+        RECORDING.remove(this);
+    }
+
+    public boolean isRecording() {
+        return RECORDING.contains(this);
+    }
+
+    /**
+     * Records the current state of the specified block, if it is inside the region and
+     * has not been recorded already.
+     *
+     * @param block Block to record
+     */
+    public void record(@NotNull Block block) {
+        if (contains(block))
+            changes.computeIfAbsent(key(block.getX(), block.getY(), block.getZ()), k -> block.getState());
+    }
+
+    private void record(BlockState state) {
+        if (state.getWorld().equals(world) && contains(state.getX(), state.getY(), state.getZ()))
+            changes.putIfAbsent(key(state.getX(), state.getY(), state.getZ()), state);
+    }
+
+    /**
+     * Returns the number of blocks that changed
+     *
+     * @return The number of changed blocks
+     */
+    public int getChangeCount() {
+        return changes.size();
+    }
+
+    /**
+     * Restores all the changed blocks to their original state at once, and clears the
+     * recorded changes.
+     *
+     * @return The number of restored blocks
+     */
+    public int restore() {
+        int restored = changes.size();
+        for (BlockState state : changes.values())
+            state.update(true, false);
+        changes.clear();
+        return restored;
+    }
+
+    /**
+     * Restores all the changed blocks to their original state across multiple ticks, spending
+     * at most the specified time every tick. The recorded changes are cleared immediately, so
+     * recording can continue while restoring.
+     *
+     * @param millisPerTick The time budget of every tick, in milliseconds
+     * @return A future that completes when all blocks are restored
+     */
+    public CompletableFuture<Void> restore(long millisPerTick) {
+        Preconditions.checkArgument(millisPerTick > 0, "millisPerTick must be positive!");
+        List<BlockState> states = new ArrayList<>(changes.values());
+        changes.clear();
+        List<Runnable> slices = new ArrayList<>();
+        for (int i = 0; i < states.size(); i += BLOCKS_PER_SLICE) {
+            List<BlockState> slice = states.subList(i, Math.min(i + BLOCKS_PER_SLICE, states.size()));
+            slices.add(() -> {
+                for (BlockState state : slice)
+                    state.update(true, false);
+            });
+        }
+        return PasteFuture.run(slices, millisPerTick);
+    }
+
+    private boolean contains(Block block) {
+        return block.getWorld().equals(world) && contains(block.getX(), block.getY(), block.getZ());
+    }
+
+    private boolean contains(int x, int y, int z) {
+        return x >= minX && x <= maxX && y >= minY && y <= maxY && z >= minZ && z <= maxZ;
+    }
+
+    private static long key(int x, int y, int z) {
+        return ((long) (x & 0x3FFFFFF) << 38) | ((long) (z & 0x3FFFFFF) << 12) | (y & 0xFFF);
+    }
+
+    private static void recordAll(Block block) {
+        for (ChangeRecorder recorder : RECORDING)
+            recorder.record(block);
+    }
+
+    private static void recordAll(Collection<Block> blocks) {
+        if (RECORDING.isEmpty()) return;
+        for (Block block : blocks)
+            recordAll(block);
+    }
+
+    private static void recordStates(Collection<BlockState> states) {
+        if (RECORDING.isEmpty()) return;
+        for (BlockState state : states)
+            recordAll(state.getBlock());
+    }
+
+    /**
+     * Records the specified block and the blocks next to it, which may drop along with it
+     *
+     * @param block The removed block
+     */
+    private static void recordRemoved(Block block) {
+        if (RECORDING.isEmpty()) return;
+        recordAll(block);
+        for (BlockFace face : ADJACENT)
+            recordAll(block.getRelative(face));
+    }
+
+    /**
+     * Records block changes for all started recorders
+     */
+    public static class RecordingListener implements Listener {
+
+        @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+        public void onBlockBreak(BlockBreakEvent event) {
+            recordRemoved(event.getBlock());
+        }
+
+        @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+        public void onBlockPlace(BlockPlaceEvent event) {
+            // the blocks are already placed at this point
+            List<BlockState> replaced = event instanceof BlockMultiPlaceEvent
+                    ? ((BlockMultiPlaceEvent) event).getReplacedBlockStates() // beds and doors
+                    : Collections.singletonList(event.getBlockReplacedState());
+            for (ChangeRecorder recorder : RECORDING)
+                for (BlockState state : replaced)
+                    recorder.record(state);
+        }
+
+        @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+        public void onBlockBurn(BlockBurnEvent event) {
+            recordRemoved(event.getBlock());
+        }
+
+        @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+        public void onBlockIgnite(BlockIgniteEvent event) {
+            recordAll(event.getBlock());
+        }
+
+        @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+        public void onBlockExplode(BlockExplodeEvent event) {
+            recordAll(event.getBlock());
+            for (Block block : event.blockList())
+                recordRemoved(block);
+        }
+
+        @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+        public void onEntityExplode(EntityExplodeEvent event) {
+            for (Block block : event.blockList())
+                recordRemoved(block);
+        }
+
+        @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+        public void onBlockFromTo(BlockFromToEvent event) {
+            recordAll(event.getToBlock());
+        }
+
+        @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+        public void onBlockFade(BlockFadeEvent event) {
+            recordAll(event.getBlock());
+        }
+
+        @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+        public void onBlockForm(BlockFormEvent event) {
+            recordAll(event.getBlock());
+        }
+
+        @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+        public void onBlockSpread(BlockSpreadEvent event) {
+            recordAll(event.getBlock()); // has its own handler list, so BlockFormEvent handlers do not see it
+        }
+
+        @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+        public void onBlockGrow(BlockGrowEvent event) {
+            recordAll(event.getBlock());
+        }
+
+        @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+        public void onStructureGrow(StructureGrowEvent event) {
+            recordStates(event.getBlocks());
+        }
+
+        @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+        public void onLeavesDecay(LeavesDecayEvent event) {
+            recordAll(event.getBlock());
+        }
+
+        @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+        public void onPistonExtend(BlockPistonExtendEvent event) {
+            recordPiston(event.getBlock(), event.getDirection(), event.getBlocks());
+        }
+
+        @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+        public void onPistonRetract(BlockPistonRetractEvent event) {
+            recordPiston(event.getBlock(), event.getDirection(), event.getBlocks());
+        }
+
+        private void recordPiston(Block piston, BlockFace direction, List<Block> moved) {
+            if (RECORDING.isEmpty()) return;
+            recordAll(piston);
+            recordAll(piston.getRelative(direction));
+            for (Block block : moved) {
+                recordAll(block);
+                recordAll(block.getRelative(direction));
+            }
+        }
+
+        @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+        public void onEntityChangeBlock(EntityChangeBlockEvent event) {
+            recordAll(event.getBlock());
+        }
+
+        @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+        public void onBucketEmpty(PlayerBucketEmptyEvent event) {
+            recordAll(event.getBlockClicked().getRelative(event.getBlockFace()));
+        }
+
+        @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+        public void onBucketFill(PlayerBucketFillEvent event) {
+            recordAll(event.getBlockClicked());
+            recordAll(event.getBlockClicked().getRelative(event.getBlockFace()));
+        }
+    }
+
+    /**
+     * Records blocks absorbed by sponges. This is separate from {@link RecordingListener}
+     * because the event does not exist before 1.13.
+     */
+    public static class SpongeListener implements Listener {
+
+        @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+        public void onSpongeAbsorb(SpongeAbsorbEvent event) {
+            recordAll(event.getBlock());
+            recordStates(event.getBlocks());
+        }
+    }
+}
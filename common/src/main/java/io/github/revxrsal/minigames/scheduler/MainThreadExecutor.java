@@ -0,0 +1,35 @@
+package io.github.revxrsal.minigames.scheduler;
+
+import org.bukkit.Bukkit;
+import org.bukkit.plugin.Plugin;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.Executor;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * An {@link Executor} that runs tasks on the server's main thread. Tasks submitted from the main
+ * thread run immediately, and tasks submitted from other threads run on the next tick.
+ * <p>
+ * This can be used to hop back to the main thread after asynchronous work, for example:
+ * <br><code>
+ * scheduler.after(5, SECONDS).thenRunAsync(() -&gt; player.teleport(spawn), mainThread);
+ * </code>
+ */
+public class MainThreadExecutor implements Executor {
+
+    private final Plugin plugin;
+
+    public MainThreadExecutor(@NotNull Plugin plugin) {
+        this.plugin = requireNonNull(plugin, "plugin is null!");
+    }
+
+    @Override public void execute(@NotNull Runnable command) {
+        if (Bukkit.isPrimaryThread())
+            command.run();
+        else
+            Bukkit.getScheduler().runTask(plugin, command);
+    }
+
+}
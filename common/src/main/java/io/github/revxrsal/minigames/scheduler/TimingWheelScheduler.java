@@ -0,0 +1,363 @@
+/*
+ * * Copyright 2020 github.com/ReflxctionDev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.revxrsal.minigames.scheduler;
+
+import com.google.common.base.Preconditions;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A {@link ScheduledExecutorService} backed by hashed timing wheels.
+ * <p>
+ * Scheduling and cancelling a task are O(1): the task is pushed into a lock-free queue of one of the
+ * shards, and each shard's thread moves it into the matching bucket of its wheel on the next tick. When
+ * a task is due, it is handed over to the backing {@link Executor}, so a slow task never delays the others.
+ * <p>
+ * Tasks are fired with the precision of a single tick, which defaults to a server tick (50ms). Tasks
+ * scheduled with no delay are executed immediately.
+ */
+public class TimingWheelScheduler extends AbstractExecutorService implements ScheduledExecutorService {
+
+    /**
+     * The duration of a server tick, in milliseconds
+     */
+    public static final long SERVER_TICK = 50;
+
+    private static final AtomicInteger SCHEDULERS = new AtomicInteger();
+
+    private final Executor executor;
+    private final Shard[] shards;
+    private final long tickDuration;
+    private final int mask;
+    private final long startTime = System.nanoTime();
+    private final AtomicInteger nextShard = new AtomicInteger();
+    private volatile boolean shutdown = false;
+
+    /**
+     * Creates a new scheduler that ticks with every server tick
+     *
+     * @param executor Executor to run due tasks on
+     * @param shards   The number of wheels and threads to spread tasks over
+     */
+    public TimingWheelScheduler(@NotNull Executor executor, int shards) {
+        this(executor, shards, SERVER_TICK, TimeUnit.MILLISECONDS, 512);
+    }
+
+    /**
+     * Creates a new scheduler
+     *
+     * @param executor      Executor to run due tasks on
+     * @param shards        The number of wheels and threads to spread tasks over
+     * @param tickDuration  The duration of a single tick
+     * @param unit          The unit of the tick duration
+     * @param ticksPerWheel The number of buckets in each wheel. Will be rounded up to a power of 2
+     */
+    public TimingWheelScheduler(@NotNull Executor executor, int shards, long tickDuration, @NotNull TimeUnit unit, int ticksPerWheel) {
+        Preconditions.checkArgument(shards > 0, "shards must be greater than 0!");
+        Preconditions.checkArgument(tickDuration > 0, "tickDuration must be greater than 0!");
+        Preconditions.checkArgument(ticksPerWheel > 0 && ticksPerWheel <= 1 << 20, "ticksPerWheel must be between 1 and 2^20!");
+        this.executor = requireNonNull(executor, "executor is null!");
+        this.tickDuration = unit.toNanos(tickDuration);
+        int wheelSize = Integer.highestOneBit(ticksPerWheel - 1) << 1;
+        if (wheelSize == 0) wheelSize = 1;
+        mask = wheelSize - 1;
+        int id = SCHEDULERS.incrementAndGet();
+        this.shards = new Shard[shards];
+        for (int i = 0; i < shards; i++)
+            this.shards[i] = new Shard("minigames-scheduler-" + id + "-" + i, wheelSize);
+    }
+
+    @NotNull @Override
+    public ScheduledFuture<?> schedule(@NotNull Runnable command, long delay, @NotNull TimeUnit unit) {
+        return schedule(new Timeout<>(Executors.callable(requireNonNull(command, "command is null!"), null), 0, false), delay, unit);
+    }
+
+    @NotNull @Override
+    public <V> ScheduledFuture<V> schedule(@NotNull Callable<V> callable, long delay, @NotNull TimeUnit unit) {
+        return schedule(new Timeout<>(requireNonNull(callable, "callable is null!"), 0, false), delay, unit);
+    }
+
+    @NotNull @Override
+    public ScheduledFuture<?> scheduleAtFixedRate(@NotNull Runnable command, long initialDelay, long period, @NotNull TimeUnit unit) {
+        Preconditions.checkArgument(period > 0, "period must be greater than 0!");
+        return schedule(new Timeout<>(Executors.callable(requireNonNull(command, "command is null!"), null), unit.toNanos(period), true), initialDelay, unit);
+    }
+
+    @NotNull @Override
+    public ScheduledFuture<?> scheduleWithFixedDelay(@NotNull Runnable command, long initialDelay, long delay, @NotNull TimeUnit unit) {
+        Preconditions.checkArgument(delay > 0, "delay must be greater than 0!");
+        return schedule(new Timeout<>(Executors.callable(requireNonNull(command, "command is null!"), null), unit.toNanos(delay), false), initialDelay, unit);
+    }
+
+    /**
+     * Returns a future that is completed after the specified delay. Dependent actions can be
+     * moved to the main thread using {@link MainThreadExecutor}.
+     *
+     * @param delay Delay to wait
+     * @param unit  The delay unit
+     * @return The future
+     */
+    public CompletableFuture<Void> after(long delay, @NotNull TimeUnit unit) {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        ScheduledFuture<?> task = schedule(() -> future.complete(null), delay, unit);
+        future.whenComplete((v, t) -> {
+            if (future.isCancelled()) task.cancel(false);
+        });
+        return future;
+    }
+
+    @Override public void execute(@NotNull Runnable command) {
+        if (shutdown) throw new RejectedExecutionException("Scheduler has been shut down");
+        executor.execute(command);
+    }
+
+    private <V> Timeout<V> schedule(Timeout<V> timeout, long delay, TimeUnit unit) {
+        if (shutdown) throw new RejectedExecutionException("Scheduler has been shut down");
+        long nanos = unit.toNanos(delay);
+        if (nanos <= 0 && timeout.period == 0) {
+            executor.execute(timeout);
+            return timeout;
+        }
+        timeout.deadline = now() + Math.max(nanos, 0);
+        Shard shard = shards.length == 1 ? shards[0] : shards[(nextShard.getAndIncrement() & Integer.MAX_VALUE) % shards.length];
+        shard.add(timeout);
+        return timeout;
+    }
+
+    private long now() {
+        return System.nanoTime() - startTime;
+    }
+
+    @Override public void shutdown() {
+        shutdown = true;
+        for (Shard shard : shards)
+            LockSupport.unpark(shard.thread);
+    }
+
+    @NotNull @Override public List<Runnable> shutdownNow() {
+        shutdown();
+        List<Runnable> pending = new ArrayList<>();
+        for (Shard shard : shards) {
+            pending.addAll(shard.pending);
+            shard.pending.clear();
+            for (Bucket bucket : shard.wheel)
+                for (Timeout<?> t = bucket.head; t != null; t = t.next)
+                    pending.add(t);
+        }
+        return Collections.unmodifiableList(pending);
+    }
+
+    @Override public boolean isShutdown() {
+        return shutdown;
+    }
+
+    @Override public boolean isTerminated() {
+        if (!shutdown) return false;
+        for (Shard shard : shards)
+            if (shard.thread != null && shard.thread.isAlive()) return false;
+        return true;
+    }
+
+    @Override public boolean awaitTermination(long timeout, @NotNull TimeUnit unit) throws InterruptedException {
+        long end = System.nanoTime() + unit.toNanos(timeout);
+        for (Shard shard : shards) {
+            if (shard.thread == null) continue;
+            long left = end - System.nanoTime();
+            if (left <= 0) return isTerminated();
+            TimeUnit.NANOSECONDS.timedJoin(shard.thread, left);
+        }
+        return isTerminated();
+    }
+
+    /**
+     * A single wheel, with its own thread
+     */
+    private final class Shard implements Runnable {
+
+        private final String name;
+        private final Bucket[] wheel;
+        private final Queue<Timeout<?>> pending = new ConcurrentLinkedQueue<>();
+        private final Queue<Timeout<?>> cancelled = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean started = new AtomicBoolean(false);
+        private volatile Thread thread;
+        private long tick = 0;
+
+        Shard(String name, int size) {
+            this.name = name;
+            wheel = new Bucket[size];
+            for (int i = 0; i < size; i++)
+                wheel[i] = new Bucket();
+        }
+
+        void add(Timeout<?> timeout) {
+            timeout.shard = this;
+            pending.add(timeout);
+            if (started.compareAndSet(false, true)) {
+                Thread thread = new Thread(this, name);
+                thread.setDaemon(true);
+                this.thread = thread;
+                thread.start();
+            }
+        }
+
+        @Override public void run() {
+            tick = now() / tickDuration; // shards start lazily, so do not replay the ticks before this one
+            while (!shutdown) {
+                long deadline = waitForNextTick();
+                if (deadline < 0) continue;
+                removeCancelled();
+                transferPending();
+                wheel[(int) (tick & mask)].expire(deadline);
+                tick++;
+            }
+        }
+
+        private long waitForNextTick() {
+            long deadline = tickDuration * (tick + 1);
+            while (true) {
+                long current = now();
+                long sleep = deadline - current;
+                if (sleep <= 0) return current;
+                if (shutdown) return -1;
+                LockSupport.parkNanos(this, sleep);
+            }
+        }
+
+        private void transferPending() {
+            Timeout<?> timeout;
+            while ((timeout = pending.poll()) != null) {
+                if (timeout.isCancelled()) continue;
+                long calculated = timeout.deadline / tickDuration;
+                timeout.remainingRounds = (calculated - tick) / wheel.length;
+                long ticks = Math.max(calculated, tick); // never schedule in the past
+                wheel[(int) (ticks & mask)].add(timeout);
+            }
+        }
+
+        private void removeCancelled() {
+            Timeout<?> timeout;
+            while ((timeout = cancelled.poll()) != null)
+                if (timeout.bucket != null) timeout.bucket.remove(timeout);
+        }
+    }
+
+    /**
+     * A doubly linked list of timeouts, only accessed by its shard thread
+     */
+    private final class Bucket {
+
+        private Timeout<?> head, tail;
+
+        void add(Timeout<?> timeout) {
+            timeout.bucket = this;
+            if (head == null) {
+                head = tail = timeout;
+            } else {
+                tail.next = timeout;
+                timeout.prev = tail;
+                tail = timeout;
+            }
+        }
+
+        void expire(long deadline) {
+            Timeout<?> timeout = head;
+            while (timeout != null) {
+                Timeout<?> next = timeout.next;
+                if (timeout.isCancelled()) {
+                    remove(timeout);
+                } else if (timeout.remainingRounds <= 0) {
+                    remove(timeout);
+                    if (timeout.deadline <= deadline)
+                        executor.execute(timeout);
+                    else
+                        timeout.shard.pending.add(timeout); // should not happen, but never fire early
+                } else
+                    timeout.remainingRounds--;
+                timeout = next;
+            }
+        }
+
+        void remove(Timeout<?> timeout) {
+            Timeout<?> next = timeout.next;
+            if (timeout.prev != null) timeout.prev.next = next;
+            if (next != null) next.prev = timeout.prev;
+            if (timeout == head) head = next;
+            if (timeout == tail) tail = timeout.prev;
+            timeout.prev = timeout.next = null;
+            timeout.bucket = null;
+        }
+    }
+
+    /**
+     * A scheduled task
+     */
+    private final class Timeout<V> extends FutureTask<V> implements ScheduledFuture<V> {
+
+        /**
+         * The period of a repeating task in nanoseconds, or 0 if it only runs once
+         */
+        private final long period;
+        private final boolean fixedRate;
+
+        private volatile long deadline;
+        private long remainingRounds;
+        private Shard shard;
+        private Bucket bucket;
+        private Timeout<?> prev, next;
+
+        Timeout(Callable<V> callable, long period, boolean fixedRate) {
+            super(callable);
+            this.period = period;
+            this.fixedRate = fixedRate;
+        }
+
+        @Override public void run() {
+            if (period == 0) {
+                super.run();
+                return;
+            }
+            if (!runAndReset() || shutdown) return;
+            deadline = fixedRate ? deadline + period : now() + period;
+            shard.pending.add(this);
+        }
+
+        @Override public boolean cancel(boolean mayInterruptIfRunning) {
+            boolean cancelled = super.cancel(mayInterruptIfRunning);
+            if (cancelled && shard != null) shard.cancelled.add(this);
+            return cancelled;
+        }
+
+        @Override public long getDelay(@NotNull TimeUnit unit) {
+            return unit.convert(deadline - now(), TimeUnit.NANOSECONDS);
+        }
+
+        @Override public int compareTo(@NotNull Delayed o) {
+            if (o == this) return 0;
+            return Long.compare(getDelay(TimeUnit.NANOSECONDS), o.getDelay(TimeUnit.NANOSECONDS));
+        }
+    }
+
+}
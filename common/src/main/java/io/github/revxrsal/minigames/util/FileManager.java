@@ -3,11 +3,30 @@ package io.github.revxrsal.minigames.util;
 import io.github.revxrsal.minigames.MinigamePlugin;
 import org.bukkit.plugin.java.JavaPlugin;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
-import java.io.File;
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collection;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.zip.CRC32;
+
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
 
 public class FileManager {
 
+    /**
+     * The name of the file that stores the checksums of extracted bundled files
+     */
+    private static final String MANIFEST = ".bundled";
+
     private final MinigamePlugin plugin;
 
     public FileManager(MinigamePlugin plugin) {
@@ -27,4 +46,134 @@ public class FileManager {
         return directory;
     }
 
+    /**
+     * Extracts all the specified bundled files that do not exist yet, in parallel. Existing
+     * files are never overwritten, like {@link #embedded(String)}.
+     *
+     * @param names Names of the files to extract, separated by {@code /}
+     * @return The number of files that were written
+     * @see #extractAll(Collection, boolean)
+     */
+    public int extractAll(@NotNull Collection<String> names) {
+        return extractAll(names, false);
+    }
+
+    /**
+     * Extracts all the specified bundled files in parallel.
+     * <p>
+     * The checksum of every extracted file is recorded in a manifest inside the data folder.
+     * If updating is enabled and the bundled version of an existing file changes, the file is
+     * replaced, unless it was modified on disk since it was extracted. Files whose bundled checksum
+     * has not changed since they were last extracted are skipped without being read.
+     *
+     * @param names  Names of the files to extract, separated by {@code /}
+     * @param update Whether to replace existing files that were not modified with newer bundled versions
+     * @return The number of files that were written
+     */
+    public int extractAll(@NotNull Collection<String> names, boolean update) {
+        if (names.isEmpty()) return 0;
+        Path dataFolder = plugin.getDataFolder().toPath();
+        Path manifestFile = dataFolder.resolve(MANIFEST);
+        Properties manifest = new Properties();
+        if (Files.exists(manifestFile))
+            try (InputStream in = Files.newInputStream(manifestFile)) {
+                manifest.load(in);
+            } catch (IOException e) {
+                plugin.warn("Failed to read " + MANIFEST + ", all bundled files will be checked.");
+            }
+        AtomicInteger written = new AtomicInteger();
+        AtomicInteger recorded = new AtomicInteger();
+        try (JarFile jar = openJar()) {
+            CompletableFuture<?>[] tasks = new CompletableFuture[names.size()];
+            int i = 0;
+            for (String name : names) {
+                String entryName = name.replace(File.separatorChar, '/');
+                tasks[i++] = CompletableFuture.runAsync(() -> {
+                    try {
+                        Result result = extract(jar, entryName, dataFolder, manifest, update);
+                        if (result == Result.WRITTEN) written.incrementAndGet();
+                        if (result != Result.SKIPPED) recorded.incrementAndGet();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }, MinigamePlugin.THREAD_POOL);
+            }
+            CompletableFuture.allOf(tasks).join();
+        } catch (CompletionException e) {
+            throw MinigamePlugin.sneakyThrow(e.getCause());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        if (recorded.get() > 0)
+            try (OutputStream out = Files.newOutputStream(manifestFile)) {
+                manifest.store(out, "Checksums of extracted files. Do not edit.");
+            } catch (IOException e) {
+                plugin.warn("Failed to save " + MANIFEST + ":");
+                e.printStackTrace();
+            }
+        return written.get();
+    }
+
+    private Result extract(@Nullable JarFile jar, String name, Path dataFolder, Properties manifest, boolean update) throws IOException {
+        Path target = dataFolder.resolve(name.replace('/', File.separatorChar));
+        JarEntry entry = jar == null ? null : jar.getJarEntry(name);
+        long crc = entry == null ? -1 : entry.getCrc();
+        String bundled = crc == -1 ? null : Long.toHexString(crc);
+        String last = manifest.getProperty(name);
+        if (Files.exists(target)) {
+            if (!update || bundled == null || bundled.equals(last)) return Result.SKIPPED;
+            String current = Long.toHexString(checksum(target));
+            if (last == null) {
+                // extracted before the manifest existed. Track it only if it matches the bundled one
+                if (!current.equals(bundled)) return Result.SKIPPED;
+                manifest.setProperty(name, bundled);
+                return Result.RECORDED;
+            }
+            if (!current.equals(last)) return Result.SKIPPED; // modified by the user
+        }
+        Path parent = target.getParent();
+        if (parent != null) Files.createDirectories(parent);
+        try (InputStream in = open(jar, entry, name)) {
+            Files.copy(in, target, REPLACE_EXISTING);
+        }
+        if (bundled != null) manifest.setProperty(name, bundled);
+        return Result.WRITTEN;
+    }
+
+    private InputStream open(@Nullable JarFile jar, @Nullable JarEntry entry, String name) throws IOException {
+        InputStream in = jar != null && entry != null ? jar.getInputStream(entry) : plugin.getPlugin().getResource(name);
+        if (in == null)
+            throw new IllegalArgumentException("The embedded resource '" + name + "' cannot be found in " + plugin.getName());
+        return in;
+    }
+
+    /**
+     * Opens the JAR of the plugin, or returns null if the plugin was not loaded from a JAR.
+     */
+    @Nullable
+    private JarFile openJar() {
+        try {
+            Class<? extends JavaPlugin> type = plugin.getPlugin().getClass();
+            File file = Paths.get(type.getProtectionDomain().getCodeSource().getLocation().toURI()).toFile();
+            return file.isFile() ? new JarFile(file) : null;
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private static long checksum(Path file) throws IOException {
+        CRC32 crc = new CRC32();
+        byte[] buffer = new byte[8192];
+        try (InputStream in = Files.newInputStream(file)) {
+            int read;
+            while ((read = in.read(buffer)) != -1)
+                crc.update(buffer, 0, read);
+        }
+        return crc.getValue();
+    }
+
+    private enum Result {
+        SKIPPED, RECORDED, WRITTEN
+    }
+
 }
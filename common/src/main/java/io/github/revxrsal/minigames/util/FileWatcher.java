@@ -0,0 +1,158 @@
+package io.github.revxrsal.minigames.util;
+
+import com.google.common.base.Preconditions;
+import io.github.revxrsal.minigames.MinigamePlugin;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+import static java.nio.file.StandardWatchEventKinds.*;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Watches files for changes made outside the plugin, such as an operator editing a
+ * configuration on a live server.
+ * <p>
+ * Editors usually save a file in several steps, so changes are debounced: a handler runs
+ * once the file stopped changing for the debounce window. Handlers run on
+ * {@link MinigamePlugin#THREAD_POOL}, never on the main thread.
+ */
+public final class FileWatcher implements Closeable {
+
+    private final Map<WatchKey, Path> directories = new ConcurrentHashMap<>();
+    private final List<Watch> watches = new CopyOnWriteArrayList<>();
+    private final Map<Path, ScheduledFuture<?>> pending = new ConcurrentHashMap<>();
+    private volatile long debounce = TimeUnit.MILLISECONDS.toNanos(500);
+    private WatchService service;
+
+    /**
+     * Invokes the specified handler whenever the specified file changes
+     *
+     * @param file     File to watch
+     * @param onChange Invoked when the file changes
+     * @throws IOException If the directory of the file cannot be watched
+     */
+    public void watch(@NotNull File file, @NotNull Runnable onChange) throws IOException {
+        requireNonNull(onChange, "onChange is null!");
+        Path path = requireNonNull(file, "file is null!").toPath().toAbsolutePath();
+        register(path.getParent(), path, p -> onChange.run());
+    }
+
+    /**
+     * Invokes the specified handler whenever a file directly inside the specified directory
+     * is created or changes. Useful for directories of arena files.
+     *
+     * @param directory Directory to watch
+     * @param onChange  Invoked with the file that changed
+     * @throws IOException If the directory cannot be watched
+     */
+    public void watchDirectory(@NotNull File directory, @NotNull Consumer<File> onChange) throws IOException {
+        requireNonNull(onChange, "onChange is null!");
+        register(requireNonNull(directory, "directory is null!").toPath().toAbsolutePath(), null, p -> onChange.accept(p.toFile()));
+    }
+
+    /**
+     * Sets how long a file must stop changing before its handlers run
+     *
+     * @param debounce The debounce window
+     * @param unit     The time unit
+     */
+    public void setDebounce(long debounce, @NotNull TimeUnit unit) {
+        Preconditions.checkArgument(debounce >= 0, "debounce cannot be negative!");
+        this.debounce = unit.toNanos(debounce);
+    }
+
+    private synchronized void register(Path directory, @Nullable Path file, Consumer<Path> handler) throws IOException {
+        if (service == null) {
+            WatchService service = this.service = directory.getFileSystem().newWatchService();
+            Thread thread = new Thread(() -> poll(service), "Minigames File Watcher");
+            thread.setDaemon(true);
+            thread.start();
+        }
+        if (!directories.containsValue(directory))
+            directories.put(directory.register(service, ENTRY_CREATE, ENTRY_MODIFY), directory);
+        watches.add(new Watch(directory, file, handler));
+    }
+
+    private void poll(WatchService service) {
+        try {
+            while (true) {
+                WatchKey key = service.take();
+                Path directory = directories.get(key);
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (directory == null || event.kind() == OVERFLOW) continue;
+                    changed(directory.resolve((Path) event.context()));
+                }
+                if (!key.reset())
+                    directories.remove(key);
+            }
+        } catch (InterruptedException | ClosedWatchServiceException ignored) {
+        }
+    }
+
+    private void changed(Path path) {
+        AtomicReference<ScheduledFuture<?>> self = new AtomicReference<>();
+        self.set(MinigamePlugin.SCHEDULED_SERVICE.schedule(() -> {
+            pending.remove(path, self.get());
+            if (!Files.isRegularFile(path)) return;
+            for (Watch watch : watches) {
+                if (!watch.matches(path)) continue;
+                try {
+                    watch.handler.accept(path);
+                } catch (Throwable t) {
+                    MinigamePlugin.getInstance().warn("Failed to reload " + path.getFileName() + ":");
+                    t.printStackTrace();
+                }
+            }
+        }, debounce, TimeUnit.NANOSECONDS));
+        ScheduledFuture<?> previous = pending.put(path, self.get());
+        if (previous != null)
+            previous.cancel(false);
+    }
+
+    /**
+     * Stops watching all files
+     */
+    @Override public synchronized void close() {
+        if (service == null) return;
+        try {
+            service.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        service = null;
+        directories.clear();
+        watches.clear();
+        pending.values().forEach(f -> f.cancel(false));
+        pending.clear();
+    }
+
+    private static final class Watch {
+
+        private final Path directory;
+        private final Path file;
+        private final Consumer<Path> handler;
+
+        Watch(Path directory, @Nullable Path file, Consumer<Path> handler) {
+            this.directory = directory;
+            this.file = file;
+            this.handler = handler;
+        }
+
+        boolean matches(Path path) {
+            return file == null ? directory.equals(path.getParent()) : file.equals(path);
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package io.github.revxrsal.minigames.util;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import me.clip.placeholderapi.PlaceholderAPI;
+import org.bukkit.OfflinePlayer;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Represents a text that has been parsed into literal runs and {@code %placeholder%} slots.
+ * <p>
+ * Templates are parsed once and cached, so rendering them is a single pass over the
+ * segments with no intermediate strings. The rendered text is colorized as a whole, so a
+ * color code may be split by a placeholder, such as {@code &%color%}.
+ */
+public final class PlaceholderTemplate {
+
+    /**
+     * The maximum number of templates to cache. The least recently used ones are evicted first.
+     */
+    private static final int MAX_CACHED = 4096;
+
+    private static final Cache<String, PlaceholderTemplate> CACHE = CacheBuilder.newBuilder()
+            .maximumSize(MAX_CACHED)
+            .build();
+
+    private final String source;
+    private final String[] literals;
+    private final String[] placeholders;
+    private final int length;
+    private final @Nullable String constant; // the colorized text, if there are no placeholders
+
+    private PlaceholderTemplate(String source, String[] literals, String[] placeholders) {
+        this.source = source;
+        this.literals = literals;
+        this.placeholders = placeholders;
+        constant = placeholders.length == 0 ? colorize(literals[0]) : null;
+        int length = 0;
+        for (String literal : literals) length += literal.length();
+        this.length = length + placeholders.length * 8;
+    }
+
+    /**
+     * Returns the compiled template of the specified text
+     *
+     * @param text Text to compile
+     * @return The compiled template
+     */
+    public static PlaceholderTemplate compile(@NotNull String text) {
+        PlaceholderTemplate template = CACHE.getIfPresent(text);
+        if (template != null) return template;
+        template = parse(text);
+        CACHE.put(text, template);
+        return template;
+    }
+
+    /**
+     * Renders this template with the specified arguments.
+     *
+     * @param args Arguments to fill placeholders from. See {@link Placeholders#resolve(String, Object...)}
+     * @return The rendered, colorized text
+     */
+    public String render(Object... args) {
+        if (placeholders.length == 0) return constant;
+        StringBuilder builder = new StringBuilder(length);
+        boolean unresolved = false;
+        builder.append(literals[0]);
+        for (int i = 0; i < placeholders.length; i++) {
+            String value = Placeholders.resolve(placeholders[i], args);
+            if (value == null) {
+                builder.append('%').append(placeholders[i]).append('%');
+                unresolved = true;
+            } else
+                builder.append(value);
+            builder.append(literals[i + 1]);
+        }
+        String text = builder.toString();
+        if (unresolved && Placeholders.PAPI)
+            text = PlaceholderAPI.setPlaceholders(findPlayer(args), text);
+        return colorize(text);
+    }
+
+    /**
+     * Fills all the placeholders that can be resolved from the specified arguments, and returns a
+     * template of the remaining ones. This allows rendering the shared part of a text once, and
+     * only filling the viewer-dependent placeholders for each viewer.
+     *
+     * @param args Arguments to fill placeholders from
+     * @return The partially filled template, or this template if nothing could be filled
+     */
+    public PlaceholderTemplate bind(Object... args) {
+        if (placeholders.length == 0 || args.length == 0) return this;
+        List<String> literals = new ArrayList<>();
+        List<String> placeholders = new ArrayList<>();
+        StringBuilder literal = new StringBuilder(length).append(this.literals[0]);
+        for (int i = 0; i < this.placeholders.length; i++) {
+            String value = Placeholders.resolve(this.placeholders[i], args);
+            if (value == null) {
+                literals.add(literal.toString());
+                literal.setLength(0);
+                placeholders.add(this.placeholders[i]);
+            } else
+                literal.append(value);
+            literal.append(this.literals[i + 1]);
+        }
+        if (placeholders.size() == this.placeholders.length) return this;
+        literals.add(literal.toString());
+        return new PlaceholderTemplate(source, literals.toArray(new String[0]), placeholders.toArray(new String[0]));
+    }
+
+    /**
+     * Returns the placeholders of this template, in order
+     *
+     * @return The placeholder names, without the surrounding {@code %}s
+     */
+    public String[] getPlaceholders() {
+        return placeholders.clone();
+    }
+
+    /**
+     * Returns whether this template has no placeholders at all
+     *
+     * @return Whether this template is constant
+     */
+    public boolean isConstant() {
+        return placeholders.length == 0;
+    }
+
+    /**
+     * Returns the original text of this template
+     *
+     * @return The source text
+     */
+    public String getSource() {
+        return source;
+    }
+
+    @Nullable
+    static OfflinePlayer findPlayer(Object[] args) {
+        for (Object arg : args)
+            if (arg instanceof OfflinePlayer) return (OfflinePlayer) arg;
+        return null;
+    }
+
+    private static PlaceholderTemplate parse(String text) {
+        List<String> literals = new ArrayList<>();
+        List<String> placeholders = new ArrayList<>();
+        StringBuilder literal = new StringBuilder();
+        int i = 0;
+        while (i < text.length()) {
+            char c = text.charAt(i);
+            if (c == '%') {
+                int end = text.indexOf('%', i + 1);
+                if (end != -1 && isPlaceholder(text, i + 1, end)) {
+                    literals.add(literal.toString());
+                    literal.setLength(0);
+                    placeholders.add(text.substring(i + 1, end));
+                    i = end + 1;
+                    continue;
+                }
+            }
+            literal.append(c);
+            i++;
+        }
+        literals.add(literal.toString());
+        return new PlaceholderTemplate(text, literals.toArray(new String[0]), placeholders.toArray(new String[0]));
+    }
+
+    private static String colorize(String text) {
+        return text.indexOf('&') == -1 ? text : Chat.colorize(text);
+    }
+
+    private static boolean isPlaceholder(String text, int start, int end) {
+        if (start == end) return false;
+        for (int i = start; i < end; i++)
+            if (Character.isWhitespace(text.charAt(i))) return false;
+        return true;
+    }
+
+}
@@ -2,55 +2,79 @@ package io.github.revxrsal.minigames.util;
 
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableMap.Builder;
-import me.clip.placeholderapi.PlaceholderAPI;
 import org.apache.commons.lang.text.StrBuilder;
 import org.bukkit.Bukkit;
 import org.bukkit.OfflinePlayer;
 import org.bukkit.entity.Player;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
 import java.lang.reflect.ParameterizedType;
 import java.text.NumberFormat;
 import java.time.Duration;
 import java.util.*;
 import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 
-import static io.github.revxrsal.minigames.util.Placeholders.PlaceholderFiller.p;
-
 @SuppressWarnings({"rawtypes", "CodeBlock2Expr", "unused", "RedundantSuppression"})
 public class Placeholders {
 
-    private static final boolean PAPI = Bukkit.getPluginManager().isPluginEnabled("PlaceholderAPI");
+    static final boolean PAPI = Bukkit.getPluginManager().isPluginEnabled("PlaceholderAPI");
     public static final NumberFormat NUMBER_FORMAT = NumberFormat.getInstance();
 
     /**
-     * Placeholder filler for offline players
+     * Placeholder resolver for offline players
      */
-    private static final PlaceholderFiller<OfflinePlayer> OFFLINE_PLAYER = (player, b) -> {
-        p(b, "player", player.getName() == null ? "NoName" : player.getName());
-        p(b, "player_name", player.getName() == null ? "NoName" : player.getName());
-        if (PAPI) {
-            String created = PlaceholderAPI.setPlaceholders(player, b.toString());
-            b.clear().append(created);
+    private static final PlaceholderResolver<OfflinePlayer> OFFLINE_PLAYER = (player, placeholder) -> {
+        switch (placeholder) {
+            case "player":
+            case "player_name":
+                return player.getName() == null ? "NoName" : player.getName();
+            default:
+                return null;
         }
     };
 
     /**
-     * Placeholder filler for players
+     * Placeholder resolver for players
      */
-    private static final PlaceholderFiller<Player> PLAYER = (player, b) -> {
-        p(b, "player_displayname", player.getDisplayName());
-        p(b, "player_health", (int) player.getHealth());
-        if (PAPI) {
-            String built = b.toString();
-            String created = PlaceholderAPI.setPlaceholders(player, built);
-            b.clear().append(created);
+    private static final PlaceholderResolver<Player> PLAYER = (player, placeholder) -> {
+        switch (placeholder) {
+            case "player_displayname":
+                return player.getDisplayName();
+            case "player_health":
+                return Integer.toString((int) player.getHealth());
+            default:
+                return null;
         }
-        OFFLINE_PLAYER.apply(player, b);
     };
 
+    /**
+     * Resolves the value of a single placeholder from an argument of type {@code T}
+     *
+     * @param <T> The argument type
+     */
+    @FunctionalInterface
+    public interface PlaceholderResolver<T> {
+
+        /**
+         * Returns the value of the specified placeholder
+         *
+         * @param value       The argument
+         * @param placeholder The placeholder name, without the surrounding {@code %}s
+         * @return The value, or null if this resolver does not know the placeholder
+         */
+        @Nullable String resolve(@NotNull T value, @NotNull String placeholder);
+    }
+
+    /**
+     * @deprecated Placeholders are now compiled into {@link PlaceholderTemplate}s and filled
+     * using {@link PlaceholderResolver}s.
+     */
+    @Deprecated
     @FunctionalInterface
     public interface PlaceholderFiller<T> {
 
@@ -71,25 +95,44 @@ public class Placeholders {
     }
 
     public static String on(String original, Object... formats) {
-        StrBuilder builder = new StrBuilder(original);
-        for (Entry<Class<?>, PlaceholderFiller> filler : fillers.entrySet())
-            for (Object o : formats) {
-                if (o != null)
-                    if (filler.getKey().isAssignableFrom(o.getClass()))
-                        filler.getValue().apply(filler.getKey().cast(o), builder);
-            }
-        if (PAPI) {
-            OfflinePlayer player = null;
-            for (Object t : formats) {
-                if (t == null) continue;
-                if (t instanceof OfflinePlayer) {
-                    break;
-                }
+        return PlaceholderTemplate.compile(original).render(formats);
+    }
+
+    /**
+     * Resolves the value of the specified placeholder from the first argument that
+     * has a resolver which knows it.
+     *
+     * @param placeholder The placeholder name
+     * @param args        Arguments to resolve from
+     * @return The value, or null if no argument can resolve it
+     */
+    @Nullable
+    @SuppressWarnings("unchecked")
+    public static String resolve(@NotNull String placeholder, Object... args) {
+        for (Object arg : args) {
+            if (arg == null) continue;
+            for (PlaceholderResolver resolver : resolversOf(arg.getClass())) {
+                String value = resolver.resolve(arg, placeholder);
+                if (value != null) return value;
             }
-            String created = PlaceholderAPI.setPlaceholders(player, builder.toString());
-            builder.clear().append(created);
         }
-        return Chat.colorize(builder.toString());
+        return null;
+    }
+
+    private static PlaceholderResolver[] resolversOf(Class<?> type) {
+        // registering replaces the map, so a list built from the old resolvers is never cached in the new one
+        Map<Class<?>, PlaceholderResolver[]> byType = Placeholders.byType;
+        PlaceholderResolver[] found = byType.get(type);
+        if (found != null) return found;
+        List<PlaceholderResolver> matching = new ArrayList<>();
+        synchronized (resolvers) {
+            for (Entry<Class<?>, PlaceholderResolver> resolver : resolvers.entrySet())
+                if (resolver.getKey().isAssignableFrom(type))
+                    matching.add(resolver.getValue());
+        }
+        found = matching.toArray(new PlaceholderResolver[0]);
+        byType.put(type, found);
+        return found;
     }
 
     public static String formatTimeMillis(int milliseconds) {
@@ -163,29 +206,43 @@ public class Placeholders {
         return thing + "s";
     }
 
+    /**
+     * Registers a resolver for arguments of the specified type
+     *
+     * @param type     The argument type
+     * @param resolver Resolver to register
+     * @param <T>      The argument type
+     */
+    public static <T> void register(@NotNull Class<T> type, @NotNull PlaceholderResolver<? super T> resolver) {
+        synchronized (resolvers) {
+            resolvers.put(type, resolver);
+            byType = new ConcurrentHashMap<>();
+        }
+    }
+
+    /**
+     * Registers all static {@link PlaceholderResolver} fields in the specified class
+     *
+     * @param cl Class to register from
+     */
     public static void register(@NotNull Class<?> cl) {
-        for (Field field : Placeholders.class.getDeclaredFields()) {
-            if (!PlaceholderFiller.class.isAssignableFrom(field.getType())) continue;
+        for (Field field : cl.getDeclaredFields()) {
+            if (!PlaceholderResolver.class.isAssignableFrom(field.getType()) || !Modifier.isStatic(field.getModifiers()))
+                continue;
             Class<?> type = ((Class<?>) ((ParameterizedType) field.getGenericType()).getActualTypeArguments()[0]);
             try {
-                fillers.put(type, (PlaceholderFiller) field.get(null));
+                field.setAccessible(true);
+                register((Class) type, (PlaceholderResolver) field.get(null));
             } catch (IllegalAccessException e) {
                 e.printStackTrace();
             }
         }
     }
 
-    private static final Map<Class<?>, PlaceholderFiller> fillers = new HashMap<>();
+    private static final Map<Class<?>, PlaceholderResolver> resolvers = new LinkedHashMap<>();
+    private static volatile Map<Class<?>, PlaceholderResolver[]> byType = new ConcurrentHashMap<>();
 
     static {
-        for (Field field : Placeholders.class.getDeclaredFields()) {
-            if (!PlaceholderFiller.class.isAssignableFrom(field.getType())) continue;
-            Class<?> type = ((Class<?>) ((ParameterizedType) field.getGenericType()).getActualTypeArguments()[0]);
-            try {
-                fillers.put(type, (PlaceholderFiller) field.get(null));
-            } catch (IllegalAccessException e) {
-                e.printStackTrace();
-            }
-        }
+        register(Placeholders.class);
     }
 }
@@ -0,0 +1,187 @@
+package io.github.revxrsal.minigames.worldedit;
+
+import com.google.common.base.Preconditions;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToLongFunction;
+
+/**
+ * A cache of parsed schematic clipboards.
+ * <p>
+ * Clipboards are kept until the total estimated size of all cached clipboards exceeds the
+ * memory budget, after which the least recently used ones are evicted. A clipboard is loaded
+ * again if its file was modified since it was cached.
+ */
+public final class ClipboardCache {
+
+    /**
+     * A rough estimate of how much memory a single block takes in a clipboard
+     */
+    private static final int BYTES_PER_BLOCK = 24;
+
+    private final Map<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long budget;
+    private long weight;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    ClipboardCache(long budget) {
+        this.budget = budget;
+    }
+
+    /**
+     * Returns the cached clipboard of the specified file, or loads and caches it.
+     *
+     * @param file   The schematic file
+     * @param loader Loads the clipboard from the file
+     * @param blocks Returns the number of blocks in a clipboard
+     * @param <T>    The clipboard type
+     * @return The clipboard
+     * @throws IOException If the loader throws it
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T get(@NotNull File file, @NotNull Loader<T> loader, @NotNull ToLongFunction<T> blocks) throws IOException {
+        String key = file.getAbsolutePath();
+        long lastModified = file.lastModified();
+        long length = file.length();
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry != null) {
+                if (entry.lastModified == lastModified && entry.length == length) {
+                    hits.increment();
+                    return (T) entry.clipboard;
+                }
+                remove(key);
+            }
+        }
+        misses.increment();
+        T clipboard = loader.load(file);
+        if (clipboard == null) return null;
+        long size = blocks.applyAsLong(clipboard) * BYTES_PER_BLOCK;
+        synchronized (entries) {
+            if (size > budget) return clipboard;
+            remove(key);
+            entries.put(key, new Entry(clipboard, lastModified, length, size));
+            weight += size;
+            evict();
+        }
+        return clipboard;
+    }
+
+    /**
+     * Removes the cached clipboard of the specified file
+     *
+     * @param file The schematic file
+     */
+    public void invalidate(@NotNull File file) {
+        synchronized (entries) {
+            remove(file.getAbsolutePath());
+        }
+    }
+
+    /**
+     * Removes all cached clipboards
+     */
+    public void invalidateAll() {
+        synchronized (entries) {
+            entries.clear();
+            weight = 0;
+        }
+    }
+
+    /**
+     * Sets the maximum estimated memory all cached clipboards can take
+     *
+     * @param bytes The budget, in bytes
+     */
+    public void setBudget(long bytes) {
+        Preconditions.checkArgument(bytes >= 0, "budget cannot be negative!");
+        synchronized (entries) {
+            budget = bytes;
+            evict();
+        }
+    }
+
+    private void remove(String key) {
+        Entry removed = entries.remove(key);
+        if (removed != null) weight -= removed.size;
+    }
+
+    private void evict() {
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (weight > budget && iterator.hasNext()) {
+            weight -= iterator.next().size;
+            iterator.remove();
+            evictions.increment();
+        }
+    }
+
+    public long getBudget() {
+        synchronized (entries) {
+            return budget;
+        }
+    }
+
+    public long getWeight() {
+        synchronized (entries) {
+            return weight;
+        }
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    public double getHitRate() {
+        long hits = getHits(), total = hits + getMisses();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    @Override public String toString() {
+        return "ClipboardCache{weight=" + getWeight() + "/" + getBudget() + ", hits=" + getHits() + ", misses=" + getMisses()
+                + ", evictions=" + getEvictions() + ", hitRate=" + Math.round(getHitRate() * 100) + "%}";
+    }
+
+    /**
+     * Loads a clipboard from a schematic file
+     *
+     * @param <T> The clipboard type
+     */
+    @FunctionalInterface
+    public interface Loader<T> {
+
+        T load(@NotNull File file) throws IOException;
+
+    }
+
+    private static final class Entry {
+
+        private final Object clipboard;
+        private final long lastModified;
+        private final long length;
+        private final long size;
+
+        Entry(Object clipboard, long lastModified, long length, long size) {
+            this.clipboard = clipboard;
+            this.lastModified = lastModified;
+            this.length = length;
+            this.size = size;
+        }
+    }
+}
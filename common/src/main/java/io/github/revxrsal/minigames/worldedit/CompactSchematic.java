@@ -0,0 +1,313 @@
+package io.github.revxrsal.minigames.worldedit;
+
+import com.google.common.base.Preconditions;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+
+/**
+ * A compact, uncompressed schematic format that stores a palette of block states and a
+ * packed array of palette indices.
+ * <p>
+ * Unlike WorldEdit's NBT formats, there is nothing to decompress or parse besides the palette:
+ * the file is memory-mapped and blocks are read directly from the packed array. Block states
+ * are stored as the strings of the WorldEdit version that wrote them, so a schematic can only
+ * be read by the same adapter. Entities and tile entity data, such as sign text and chest
+ * contents, are not stored.
+ * <p>
+ * Layout, big-endian:
+ * <pre>
+ * int     magic ("MGSC")
+ * byte    version
+ * int[3]  minimum point
+ * int[3]  origin
+ * int[3]  width, height, length
+ * int     palette size
+ * (ushort length, UTF-8 bytes)[palette size]
+ * byte    bits per block
+ * padding to a multiple of 8 bytes
+ * long[]  packed palette indices, ordered by y, then z, then x
+ * </pre>
+ * Indices never span two longs, so each long holds {@code 64 / bits} of them.
+ */
+public final class CompactSchematic {
+
+    /**
+     * The file extension of compact schematics
+     */
+    public static final String EXTENSION = ".cschem";
+
+    private static final int MAGIC = 0x4D475343;
+    private static final byte VERSION = 1;
+
+    private final int minX, minY, minZ;
+    private final int originX, originY, originZ;
+    private final int width, height, length;
+    private final String[] palette;
+    private final LongBuffer data;
+    private final int bits, perLong;
+    private final long mask;
+
+    private CompactSchematic(ByteBuffer buffer) throws IOException {
+        if (buffer.getInt() != MAGIC) throw new IOException("Not a compact schematic");
+        byte version = buffer.get();
+        if (version != VERSION) throw new IOException("Unsupported compact schematic version: " + version);
+        minX = buffer.getInt();
+        minY = buffer.getInt();
+        minZ = buffer.getInt();
+        originX = buffer.getInt();
+        originY = buffer.getInt();
+        originZ = buffer.getInt();
+        width = buffer.getInt();
+        height = buffer.getInt();
+        length = buffer.getInt();
+        if (width <= 0 || height <= 0 || length <= 0 || getVolume() > Integer.MAX_VALUE)
+            throw new IOException("Invalid compact schematic size: " + width + "x" + height + "x" + length);
+        int paletteSize = buffer.getInt();
+        if (paletteSize <= 0 || paletteSize > buffer.remaining() / 2) // every entry takes at least 2 bytes
+            throw new IOException("Invalid compact schematic palette size: " + paletteSize);
+        palette = new String[paletteSize];
+        for (int i = 0; i < palette.length; i++) {
+            byte[] bytes = new byte[buffer.getShort() & 0xFFFF];
+            buffer.get(bytes);
+            palette[i] = new String(bytes, StandardCharsets.UTF_8);
+        }
+        bits = buffer.get();
+        if (bits < 1 || bits > 32 || paletteSize > 1L << bits)
+            throw new IOException("Invalid compact schematic bits per block: " + bits);
+        perLong = 64 / bits;
+        mask = (1L << bits) - 1;
+        buffer.position(align(buffer.position()));
+        data = buffer.slice().asLongBuffer();
+        if (data.remaining() < longs(getVolume(), perLong)) throw new EOFException("Compact schematic is truncated");
+    }
+
+    /**
+     * Memory-maps and reads the specified compact schematic. Only the header and palette
+     * are read eagerly.
+     *
+     * @param file File to read
+     * @return The schematic
+     * @throws IOException If the file cannot be read, is not a compact schematic or is corrupt
+     */
+    public static CompactSchematic read(@NotNull File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            // the mapping stays valid after the channel is closed
+            return new CompactSchematic(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        } catch (RuntimeException e) { // a corrupt header, such as one that ends early
+            throw new IOException("Corrupt compact schematic: " + file.getName(), e);
+        }
+    }
+
+    /**
+     * Returns the palette index of the block at the specified position. In a corrupt file,
+     * this may be outside the palette.
+     *
+     * @param x The X coordinate, relative to the minimum point
+     * @param y The Y coordinate, relative to the minimum point
+     * @param z The Z coordinate, relative to the minimum point
+     * @return The palette index of the block
+     */
+    public int getBlock(int x, int y, int z) {
+        int index = (y * length + z) * width + x;
+        return (int) ((data.get(index / perLong) >>> (index % perLong) * bits) & mask);
+    }
+
+    /**
+     * Returns the block state of the specified palette index
+     *
+     * @param index The palette index
+     * @return The block state, as written by the adapter
+     */
+    public String getState(int index) {
+        return palette[index];
+    }
+
+    public int getPaletteSize() {
+        return palette.length;
+    }
+
+    public int getMinX() {
+        return minX;
+    }
+
+    public int getMinY() {
+        return minY;
+    }
+
+    public int getMinZ() {
+        return minZ;
+    }
+
+    public int getOriginX() {
+        return originX;
+    }
+
+    public int getOriginY() {
+        return originY;
+    }
+
+    public int getOriginZ() {
+        return originZ;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getLength() {
+        return length;
+    }
+
+    public long getVolume() {
+        return (long) width * height * length;
+    }
+
+    private static int align(int position) {
+        return (position + 7) & ~7;
+    }
+
+    private static int longs(long volume, int perLong) {
+        return (int) ((volume + perLong - 1) / perLong);
+    }
+
+    /**
+     * Builds a compact schematic block by block. The block state the builder starts with
+     * always has the palette index 0, so readers can skip it.
+     */
+    public static final class Builder {
+
+        private final int minX, minY, minZ;
+        private final int width, height, length;
+        private int originX, originY, originZ;
+        private final Map<String, Integer> indices = new HashMap<>();
+        private final List<String> palette = new ArrayList<>();
+        private final int[] blocks;
+
+        /**
+         * Creates a builder for a schematic of the specified bounds, initially filled with
+         * the specified block state.
+         *
+         * @param minX   Minimum X coordinate
+         * @param minY   Minimum Y coordinate
+         * @param minZ   Minimum Z coordinate
+         * @param width  Size along the X axis
+         * @param height Size along the Y axis
+         * @param length Size along the Z axis
+         * @param air    The block state every block starts with
+         */
+        public Builder(int minX, int minY, int minZ, int width, int height, int length, @NotNull String air) {
+            Preconditions.checkArgument(width > 0 && height > 0 && length > 0, "Size must be positive!");
+            Preconditions.checkArgument((long) width * height * length <= Integer.MAX_VALUE, "Schematic is too big!");
+            this.minX = originX = minX;
+            this.minY = originY = minY;
+            this.minZ = originZ = minZ;
+            this.width = width;
+            this.height = height;
+            this.length = length;
+            blocks = new int[width * height * length];
+            index(air);
+        }
+
+        public Builder origin(int x, int y, int z) {
+            originX = x;
+            originY = y;
+            originZ = z;
+            return this;
+        }
+
+        /**
+         * Sets the block at the specified position
+         *
+         * @param x     The X coordinate, relative to the minimum point
+         * @param y     The Y coordinate, relative to the minimum point
+         * @param z     The Z coordinate, relative to the minimum point
+         * @param state The block state
+         * @return This builder
+         */
+        public Builder set(int x, int y, int z, @NotNull String state) {
+            Preconditions.checkElementIndex(x, width, "x");
+            Preconditions.checkElementIndex(y, height, "y");
+            Preconditions.checkElementIndex(z, length, "z");
+            blocks[(y * length + z) * width + x] = index(state);
+            return this;
+        }
+
+        private int index(String state) {
+            return indices.computeIfAbsent(state, k -> {
+                palette.add(k);
+                return palette.size() - 1;
+            });
+        }
+
+        /**
+         * Writes the schematic to the specified file. The file is replaced atomically, so a
+         * schematic that is being read is never seen half-written.
+         *
+         * @param file File to write to
+         * @throws IOException If writing fails
+         */
+        public void write(@NotNull File file) throws IOException {
+            int bits = Math.max(1, 32 - Integer.numberOfLeadingZeros(palette.size() - 1));
+            int perLong = 64 / bits;
+            Path path = file.toPath();
+            Path temp = path.resolveSibling(file.getName() + ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeInt(MAGIC);
+                out.writeByte(VERSION);
+                out.writeInt(minX);
+                out.writeInt(minY);
+                out.writeInt(minZ);
+                out.writeInt(originX);
+                out.writeInt(originY);
+                out.writeInt(originZ);
+                out.writeInt(width);
+                out.writeInt(height);
+                out.writeInt(length);
+                out.writeInt(palette.size());
+                for (String state : palette) {
+                    byte[] bytes = state.getBytes(StandardCharsets.UTF_8);
+                    Preconditions.checkArgument(bytes.length <= 0xFFFF, "Block state is too long: %s", state);
+                    out.writeShort(bytes.length);
+                    out.write(bytes);
+                }
+                out.writeByte(bits);
+                for (int i = out.size(), end = align(i); i < end; i++)
+                    out.writeByte(0);
+                long packed = 0;
+                for (int i = 0; i < blocks.length; i++) {
+                    int shift = (i % perLong) * bits;
+                    packed |= (long) blocks[i] << shift;
+                    if (i % perLong == perLong - 1 || i == blocks.length - 1) {
+                        out.writeLong(packed);
+                        packed = 0;
+                    }
+                }
+            }
+            try {
+                Files.move(temp, path, REPLACE_EXISTING, ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, path, REPLACE_EXISTING);
+            }
+        }
+    }
+}
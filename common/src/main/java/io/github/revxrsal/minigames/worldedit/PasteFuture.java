@@ -0,0 +1,103 @@
+package io.github.revxrsal.minigames.worldedit;
+
+import io.github.revxrsal.minigames.MinigamePlugin;
+import org.bukkit.Bukkit;
+import org.bukkit.scheduler.BukkitTask;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A paste that runs in slices across multiple ticks. Each tick, slices are pasted until the
+ * time budget of the tick is used up.
+ * <p>
+ * Cancelling this future stops the paste after the current tick, leaving the slices that were
+ * already pasted in place.
+ */
+public final class PasteFuture extends CompletableFuture<Void> {
+
+    private final Iterator<Runnable> slices;
+    private final int total;
+    private final Runnable flush;
+    private final Runnable finish;
+    private final long budget;
+    private volatile int pasted = 0;
+    private BukkitTask task;
+
+    PasteFuture(List<Runnable> slices, Runnable flush, Runnable finish, long millisPerTick) {
+        this.slices = slices.iterator();
+        this.total = slices.size();
+        this.flush = flush;
+        this.finish = finish;
+        this.budget = TimeUnit.MILLISECONDS.toNanos(millisPerTick);
+    }
+
+    /**
+     * Runs the specified slices on the main thread across multiple ticks, spending at most
+     * the specified time every tick
+     *
+     * @param slices        Slices to run, in order
+     * @param millisPerTick The time budget of every tick, in milliseconds
+     * @return The started future
+     */
+    public static PasteFuture run(@NotNull List<Runnable> slices, long millisPerTick) {
+        return new PasteFuture(slices, () -> {}, () -> {}, millisPerTick).start();
+    }
+
+    PasteFuture start() {
+        task = Bukkit.getScheduler().runTaskTimer(MinigamePlugin.getInstance().getPlugin(), this::tick, 0, 1);
+        return this;
+    }
+
+    private void tick() {
+        if (isDone()) { // cancelled
+            stop();
+            return;
+        }
+        try {
+            long deadline = System.nanoTime() + budget;
+            while (slices.hasNext()) {
+                slices.next().run();
+                pasted++;
+                if (System.nanoTime() - deadline >= 0) break;
+            }
+            flush.run();
+            if (!slices.hasNext()) {
+                stop();
+                complete(null);
+            }
+        } catch (Throwable t) {
+            stop();
+            completeExceptionally(t);
+        }
+    }
+
+    private void stop() {
+        task.cancel();
+        try {
+            finish.run();
+        } catch (Throwable t) {
+            completeExceptionally(t);
+        }
+    }
+
+    /**
+     * Returns the progress of this paste
+     *
+     * @return The progress, from 0 to 1
+     */
+    public double getProgress() {
+        return total == 0 ? 1 : (double) pasted / total;
+    }
+
+    public int getPastedSlices() {
+        return pasted;
+    }
+
+    public int getTotalSlices() {
+        return total;
+    }
+}
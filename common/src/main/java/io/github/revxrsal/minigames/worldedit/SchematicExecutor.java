@@ -0,0 +1,135 @@
+package io.github.revxrsal.minigames.worldedit;
+
+import com.google.common.base.Preconditions;
+import io.github.revxrsal.minigames.MinigamePlugin;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Runs schematic operations of adapters that work off the main thread, such as
+ * FastAsyncWorldEdit.
+ * <p>
+ * At most a fixed number of operations run at the same time, and the rest wait in a queue,
+ * so that restoring many arenas at once does not flood the WorldEdit queue. The future of an
+ * operation that runs longer than the timeout fails with a {@link TimeoutException}, and
+ * cancelling the future removes the operation from the queue.
+ * <p>
+ * Once an operation started, it is interrupted when it times out or is cancelled. WorldEdit
+ * and FastAsyncWorldEdit ignore interrupts though, so the operation keeps running and holds
+ * its slot until it checks its cancellation flag and stops. Pastes check it between
+ * chunk-sized slices, while writes always run to completion. Blocks that were already
+ * pasted are not reverted.
+ */
+public final class SchematicExecutor {
+
+    private final AtomicInteger threads = new AtomicInteger();
+    private final ThreadPoolExecutor executor;
+    private volatile long timeout;
+
+    SchematicExecutor(int concurrency, long timeout, TimeUnit unit) {
+        executor = new ThreadPoolExecutor(concurrency, concurrency, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+            Thread thread = new Thread(r, "Minigames Schematic Worker #" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.allowCoreThreadTimeOut(true);
+        setTimeout(timeout, unit);
+    }
+
+    /**
+     * Queues the specified operation
+     *
+     * @param operation Operation to run
+     * @return A future that completes when the operation is done, or completes exceptionally
+     * with whatever the operation throws.
+     */
+    public CompletableFuture<Void> submit(@NotNull Operation operation) {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        Future<?> task = executor.submit(() -> {
+            if (future.isDone()) return; // cancelled while queued
+            long timeout = this.timeout;
+            ScheduledFuture<?> timer = timeout == 0 ? null : MinigamePlugin.SCHEDULED_SERVICE.schedule(() ->
+                    future.completeExceptionally(new TimeoutException("Schematic operation timed out after "
+                            + TimeUnit.NANOSECONDS.toMillis(timeout) + "ms")), timeout, TimeUnit.NANOSECONDS);
+            try {
+                operation.run(future::isDone);
+                future.complete(null);
+            } catch (Throwable t) {
+                future.completeExceptionally(t);
+            } finally {
+                if (timer != null) timer.cancel(false);
+            }
+        });
+        future.whenComplete((v, t) -> {
+            if (t instanceof CancellationException || t instanceof TimeoutException) {
+                task.cancel(true);
+                executor.remove((Runnable) task);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Sets the maximum number of operations that run at the same time
+     *
+     * @param concurrency The concurrency limit
+     */
+    public void setConcurrency(int concurrency) {
+        Preconditions.checkArgument(concurrency >= 1, "concurrency must be at least 1!");
+        if (concurrency > executor.getMaximumPoolSize()) {
+            executor.setMaximumPoolSize(concurrency);
+            executor.setCorePoolSize(concurrency);
+        } else {
+            executor.setCorePoolSize(concurrency);
+            executor.setMaximumPoolSize(concurrency);
+        }
+    }
+
+    /**
+     * Sets how long an operation can run before it fails
+     *
+     * @param timeout The timeout, or 0 for no timeout
+     * @param unit    The time unit
+     */
+    public void setTimeout(long timeout, @NotNull TimeUnit unit) {
+        Preconditions.checkArgument(timeout >= 0, "timeout cannot be negative!");
+        this.timeout = unit.toNanos(timeout);
+    }
+
+    public int getConcurrency() {
+        return executor.getMaximumPoolSize();
+    }
+
+    public int getRunning() {
+        return executor.getActiveCount();
+    }
+
+    public int getQueued() {
+        return executor.getQueue().size();
+    }
+
+    @Override public String toString() {
+        return "SchematicExecutor{running=" + getRunning() + "/" + getConcurrency() + ", queued=" + getQueued() + "}";
+    }
+
+    /**
+     * A schematic operation
+     */
+    @FunctionalInterface
+    public interface Operation {
+
+        /**
+         * Runs this operation
+         *
+         * @param cancelled Returns true once the operation is cancelled or timed out. Long
+         *                  operations should check it regularly and stop, as they are not
+         *                  reliably interrupted.
+         * @throws Exception If the operation fails
+         */
+        void run(@NotNull BooleanSupplier cancelled) throws Exception;
+
+    }
+}
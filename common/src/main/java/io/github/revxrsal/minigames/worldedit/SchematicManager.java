@@ -28,7 +28,13 @@ import org.jetbrains.annotations.NotNull;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
@@ -48,11 +54,28 @@ public abstract class SchematicManager {
      */
     private static final SchematicManager FACTORY;
 
+    /**
+     * The cache of parsed clipboards, shared by all schematics
+     */
+    protected static final ClipboardCache CLIPBOARDS = new ClipboardCache(64L * 1024 * 1024);
+
+    /**
+     * The executor of adapters that paste and write off the main thread
+     */
+    protected static final SchematicExecutor EXECUTOR = new SchematicExecutor(2, 2, TimeUnit.MINUTES);
+
     /**
      * Represents the schematic file
      */
     protected File schematic;
 
+    /**
+     * Represents the compact schematic file, which may not exist
+     *
+     * @see CompactSchematic
+     */
+    protected File compact;
+
     /**
      * Plugin instance
      */
@@ -75,6 +98,7 @@ public abstract class SchematicManager {
         Preconditions.checkNotNull(directory, "directory cannot be null");
         this.plugin = plugin;
         schematic = new File(directory, schematicName + ".schem");
+        compact = new File(directory, schematicName + CompactSchematic.EXTENSION);
         try {
             schematic.createNewFile();
         } catch (IOException e) {
@@ -82,16 +106,148 @@ public abstract class SchematicManager {
         }
     }
 
-    public abstract void write(ClipboardHolder clipboard);
+    /**
+     * Writes the specified clipboard to the schematic file
+     *
+     * @param clipboard Clipboard to write
+     * @return A future that completes when the schematic is written, or completes
+     * exceptionally if writing fails.
+     */
+    public abstract CompletableFuture<Void> write(ClipboardHolder clipboard);
+
+    /**
+     * Converts the schematic to the {@link CompactSchematic compact format}. The schematic is
+     * then loaded from the compact file, until the schematic is written again.
+     *
+     * @throws NoSchematicException If the schematic does not exist
+     * @throws IOException          If reading the schematic or writing the compact file fails
+     */
+    public abstract void writeCompact() throws NoSchematicException, IOException;
+
+    /**
+     * Returns whether the schematic should be loaded from the compact file, which is when
+     * it exists and the schematic is empty or not newer than it. Writing the schematic
+     * deletes the compact file, so this only relies on modification times when the
+     * schematic is replaced by something else.
+     *
+     * @return True if the compact file is up to date
+     */
+    protected boolean isCompactFresh() {
+        return compact.isFile() && (schematic.length() == 0 || compact.lastModified() >= schematic.lastModified());
+    }
+
+    /**
+     * Deletes the compact file, which no longer matches the schematic. Adapters invoke this
+     * whenever they write the schematic.
+     *
+     * @throws IOException If deleting fails
+     */
+    protected void deleteCompact() throws IOException {
+        try {
+            Files.deleteIfExists(compact.toPath());
+        } finally {
+            CLIPBOARDS.invalidate(compact);
+        }
+    }
 
+    /**
+     * Pastes the schematic at the specified location
+     *
+     * @param location Location to paste in
+     * @return A future that completes when the paste is done, or completes exceptionally
+     * if the paste fails.
+     * @throws NoSchematicException If the schematic does not exist. Adapters that paste
+     *                              asynchronously complete the future with it instead.
+     */
     public abstract CompletableFuture<Void> paste(Location location) throws NoSchematicException;
 
+    /**
+     * Pastes the schematic in chunk-sized slices across multiple ticks, spending at most the
+     * specified time every tick. Adapters that already paste asynchronously paste normally.
+     *
+     * @param location      Location to paste in
+     * @param millisPerTick The time budget of every tick, in milliseconds
+     * @return A future that completes when the paste is done. If the paste is sliced, this is
+     * a {@link PasteFuture} which reports its progress.
+     * @throws NoSchematicException If the schematic does not exist
+     */
+    public CompletableFuture<Void> paste(Location location, long millisPerTick) throws NoSchematicException {
+        return paste(location);
+    }
+
+    /**
+     * Starts a paste that runs the specified slices across ticks
+     *
+     * @param slices        The slices to paste, in order
+     * @param flush         Flushes pasted blocks to the world. Invoked at the end of every tick
+     * @param finish        Invoked once when the paste ends, is cancelled or fails
+     * @param millisPerTick The time budget of every tick
+     * @return The paste future
+     */
+    protected static PasteFuture pasteSliced(List<Runnable> slices, Runnable flush, Runnable finish, long millisPerTick) {
+        Preconditions.checkArgument(millisPerTick > 0, "millisPerTick must be positive!");
+        return new PasteFuture(slices, flush, finish, millisPerTick).start();
+    }
+
+    /**
+     * Runs the specified slices on the current thread, and stops between slices once
+     * cancelled. This lets pastes off the main thread stop when they are cancelled or time
+     * out, as WorldEdit does not respond to interrupts.
+     *
+     * @param slices    The slices to paste, in order
+     * @param cancelled Returns true once the paste is cancelled
+     * @throws CancellationException If the paste is cancelled before all slices ran
+     * @see SchematicExecutor.Operation#run(BooleanSupplier)
+     */
+    protected static void runSliced(List<Runnable> slices, BooleanSupplier cancelled) {
+        for (Runnable slice : slices) {
+            if (cancelled.getAsBoolean()) throw new CancellationException("Paste was cancelled");
+            slice.run();
+        }
+    }
+
+    /**
+     * Splits the specified range of coordinates into slices that line up with the chunks
+     * they get pasted into.
+     *
+     * @param min    The minimum coordinate
+     * @param max    The maximum coordinate
+     * @param offset The offset of the coordinates in the world
+     * @return The slices, each as a {@code [from, to]} inclusive range
+     */
+    protected static List<int[]> chunkSlices(int min, int max, int offset) {
+        List<int[]> slices = new ArrayList<>();
+        int start = min - Math.floorMod(min + offset, 16);
+        for (; start <= max; start += 16)
+            slices.add(new int[]{Math.max(start, min), Math.min(start + 15, max)});
+        return slices;
+    }
+
     protected abstract SchematicManager newInstance(WorldEditPlugin plugin, String name, File directory);
 
     public static SchematicManager newSchematicManager(WorldEditPlugin plugin, String name, File directory) {
         return FACTORY.newInstance(plugin, name, directory);
     }
 
+    /**
+     * Returns the cache of parsed schematic clipboards. The memory budget is 64 MiB by default.
+     *
+     * @return The clipboard cache
+     */
+    public static ClipboardCache getClipboardCache() {
+        return CLIPBOARDS;
+    }
+
+    /**
+     * Returns the executor of adapters that paste and write asynchronously. By default, at
+     * most 2 operations run at the same time, and each times out after 2 minutes.
+     *
+     * @return The schematic executor
+     */
+    public static SchematicExecutor getExecutor() {
+        return EXECUTOR;
+    }
+
     public static Position getOrigin(@NotNull World fallback, ClipboardHolder clipboardHolder) {
         return FACTORY.convertVector(fallback.getName(), clipboardHolder);
     }
@@ -0,0 +1,74 @@
+package io.github.revxrsal.minigames.util;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Server;
+import org.bukkit.plugin.PluginManager;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Logger;
+
+import static org.junit.Assert.assertEquals;
+
+public class PlaceholderTemplateTest {
+
+    @BeforeClass public static void setUp() {
+        // Placeholders looks PlaceholderAPI up through the server
+        if (Bukkit.getServer() == null) {
+            Map<String, Object> server = new HashMap<>();
+            server.put("getLogger", Logger.getLogger("PlaceholderTemplateTest"));
+            server.put("getPluginManager", stub(PluginManager.class, new HashMap<>()));
+            Bukkit.setServer(stub(Server.class, server));
+        }
+        Placeholders.register(Values.class, (values, placeholder) -> values.values.get(placeholder));
+    }
+
+    @Test public void colorizesConstantText() {
+        assertEquals("§aWelcome!", PlaceholderTemplate.compile("&aWelcome!").render());
+    }
+
+    @Test public void colorizesValues() {
+        assertEquals("§cRed §bteam", PlaceholderTemplate.compile("%team% &bteam").render(values("team", "&cRed")));
+    }
+
+    @Test public void colorizesCodeSplitBeforePlaceholder() {
+        assertEquals("§aText", PlaceholderTemplate.compile("&%color%Text").render(values("color", "a")));
+    }
+
+    @Test public void colorizesCodeSplitAfterPlaceholder() {
+        assertEquals("[§6Text", PlaceholderTemplate.compile("%prefix%6Text").render(values("prefix", "[&")));
+    }
+
+    @Test public void colorizesCodeSplitInBoundTemplate() {
+        PlaceholderTemplate template = PlaceholderTemplate.compile("&%color%%player%").bind(values("color", "e"));
+        assertEquals("§eSteve", template.render(values("player", "Steve")));
+    }
+
+    @Test public void keepsUnresolvedPlaceholders() {
+        assertEquals("§a%unknown%", PlaceholderTemplate.compile("&a%unknown%").render(values("color", "a")));
+    }
+
+    private static Values values(String placeholder, String value) {
+        Values values = new Values();
+        values.values.put(placeholder, value);
+        return values;
+    }
+
+    private static <T> T stub(Class<T> type, Map<String, Object> answers) {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> {
+            Object answer = answers.get(method.getName());
+            if (answer != null || !method.getReturnType().isPrimitive() || method.getReturnType() == void.class)
+                return answer;
+            return Array.get(Array.newInstance(method.getReturnType(), 1), 0);
+        }));
+    }
+
+    private static final class Values {
+
+        private final Map<String, String> values = new HashMap<>();
+    }
+}
@@ -17,10 +17,8 @@ package io.github.revxrsal.minigames.legacy;
 
 import com.sk89q.worldedit.bukkit.WorldEditPlugin;
 import com.sk89q.worldedit.session.ClipboardHolder;
-import io.github.revxrsal.minigames.MinigamePlugin;
 import io.github.revxrsal.minigames.worldedit.NoSchematicException;
 import io.github.revxrsal.minigames.worldedit.SchematicManager;
-import org.bukkit.Bukkit;
 import org.bukkit.Location;
 
 import java.io.File;
@@ -35,23 +33,37 @@ public class FAWESchematicManager extends WESchematicManager {
         super(plugin, name, directory);
     }
 
+    /**
+     * Writes the specified clipboard asynchronously
+     *
+     * @param clipboard Clipboard to write
+     * @see SchematicManager#getExecutor()
+     */
     @Override
-    public void write(ClipboardHolder clipboard) {
-        Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> super.write(clipboard));
+    public CompletableFuture<Void> write(ClipboardHolder clipboard) {
+        return EXECUTOR.submit(cancelled -> writeNow(clipboard));
     }
 
+    /**
+     * Pastes the specified clipboard at the specified location asynchronously. If the
+     * schematic does not exist, the future completes with a {@link NoSchematicException}.
+     * The paste runs in chunk-sized slices, and stops between slices once it is cancelled
+     * or times out.
+     *
+     * @param location Location to paste in
+     * @see SchematicManager#getExecutor()
+     */
     @Override
     public CompletableFuture<Void> paste(Location location) {
-        CompletableFuture<Void> future = new CompletableFuture<>();
-        Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
-            try {
-                super.paste(location);
-                future.complete(null);
-            } catch (NoSchematicException e) {
-                throw MinigamePlugin.sneakyThrow(e);
-            }
-        });
-        return future;
+        return EXECUTOR.submit(cancelled -> pasteNow(location, cancelled));
+    }
+
+    /**
+     * FastAsyncWorldEdit already pastes asynchronously, so this pastes normally
+     */
+    @Override
+    public CompletableFuture<Void> paste(Location location, long millisPerTick) {
+        return paste(location);
     }
 
     /**
@@ -16,13 +16,17 @@
 package io.github.revxrsal.minigames.legacy;
 
 
+import com.sk89q.worldedit.BlockVector;
 import com.sk89q.worldedit.EditSession;
 import com.sk89q.worldedit.MaxChangedBlocksException;
 import com.sk89q.worldedit.Vector;
 import com.sk89q.worldedit.WorldEdit;
+import com.sk89q.worldedit.WorldEditException;
+import com.sk89q.worldedit.blocks.BaseBlock;
 import com.sk89q.worldedit.bukkit.BukkitUtil;
 import com.sk89q.worldedit.bukkit.BukkitWorld;
 import com.sk89q.worldedit.bukkit.WorldEditPlugin;
+import com.sk89q.worldedit.extent.clipboard.BlockArrayClipboard;
 import com.sk89q.worldedit.extent.clipboard.Clipboard;
 import com.sk89q.worldedit.extent.clipboard.io.ClipboardFormat;
 import com.sk89q.worldedit.extent.clipboard.io.ClipboardWriter;
@@ -30,21 +34,32 @@ import com.sk89q.worldedit.function.mask.ExistingBlockMask;
 import com.sk89q.worldedit.function.operation.ForwardExtentCopy;
 import com.sk89q.worldedit.function.operation.Operations;
 import com.sk89q.worldedit.math.transform.AffineTransform;
+import com.sk89q.worldedit.regions.CuboidRegion;
+import com.sk89q.worldedit.regions.Region;
 import com.sk89q.worldedit.session.ClipboardHolder;
 import com.sk89q.worldedit.util.io.Closer;
 import com.sk89q.worldedit.world.World;
+import com.sk89q.worldedit.world.registry.LegacyWorldData;
 import com.sk89q.worldedit.world.registry.WorldData;
+import io.github.revxrsal.minigames.MinigamePlugin;
 import io.github.revxrsal.minigames.util.Position;
+import io.github.revxrsal.minigames.worldedit.CompactSchematic;
 import io.github.revxrsal.minigames.worldedit.NoSchematicException;
 import io.github.revxrsal.minigames.worldedit.SchematicManager;
 import org.bukkit.Bukkit;
 import org.bukkit.Location;
 
 import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
+import java.util.function.BooleanSupplier;
 
 public class WESchematicManager extends SchematicManager {
 
+    private static final String AIR = "0:0";
+
     public WESchematicManager() {
     }
 
@@ -59,14 +74,32 @@ public class WESchematicManager extends SchematicManager {
     }
 
     @Override
-    public void write(ClipboardHolder clipboard) {
+    public CompletableFuture<Void> write(ClipboardHolder clipboard) {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        try {
+            writeNow(clipboard);
+            future.complete(null);
+        } catch (IOException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    /**
+     * Writes the specified clipboard on the current thread
+     *
+     * @param clipboard Clipboard to write
+     * @throws IOException If writing fails
+     */
+    protected void writeNow(ClipboardHolder clipboard) throws IOException {
+        deleteCompact();
         try (Closer closer = Closer.create()) {
             FileOutputStream fos = closer.register(new FileOutputStream(schematic));
             BufferedOutputStream bos = closer.register(new BufferedOutputStream(fos));
             ClipboardWriter writer = closer.register(ClipboardFormat.SCHEMATIC.getWriter(bos));
             writer.write(clipboard.getClipboard(), clipboard.getWorldData());
-        } catch (IOException e) {
-            e.printStackTrace();
+        } finally {
+            CLIPBOARDS.invalidate(schematic);
         }
     }
 
@@ -74,28 +107,181 @@ public class WESchematicManager extends SchematicManager {
     public CompletableFuture<Void> paste(Location loc) throws NoSchematicException {
         CompletableFuture<Void> future = new CompletableFuture<>();
         try {
-            World weWorld = new BukkitWorld(loc.getWorld());
-            WorldData worldData = weWorld.getWorldData();
-            Clipboard clipboard = ClipboardFormat.SCHEMATIC.getReader(new FileInputStream(schematic)).read(worldData);
-            EditSession extent = WorldEdit.getInstance().getEditSessionFactory().getEditSession(weWorld, -1);
-            AffineTransform transform = new AffineTransform();
-            ForwardExtentCopy copy = new ForwardExtentCopy(clipboard, clipboard.getRegion(), clipboard.getOrigin(),
-                    extent, BukkitUtil.toVector(loc));
-
-            if (!transform.isIdentity()) copy.setTransform(transform);
-
-            copy.setSourceMask(new ExistingBlockMask(clipboard));
-            Operations.completeLegacy(copy);
-            extent.flushQueue();
+            pasteNow(loc);
             future.complete(null);
-        } catch (IOException e) {
-            throw new NoSchematicException(schematic.getName());
         } catch (MaxChangedBlocksException e) {
-            e.printStackTrace();
+            future.completeExceptionally(e);
         }
         return future;
     }
 
+    /**
+     * Pastes the schematic on the current thread
+     *
+     * @param loc Location to paste in
+     * @throws NoSchematicException      If the schematic does not exist
+     * @throws MaxChangedBlocksException If the paste changes too many blocks
+     */
+    protected void pasteNow(Location loc) throws NoSchematicException, MaxChangedBlocksException {
+        World weWorld = new BukkitWorld(loc.getWorld());
+        WorldData worldData = weWorld.getWorldData();
+        Clipboard clipboard;
+        try {
+            clipboard = load(worldData);
+        } catch (IOException e) {
+            throw new NoSchematicException(schematic.getName());
+        }
+        EditSession extent = WorldEdit.getInstance().getEditSessionFactory().getEditSession(weWorld, -1);
+        AffineTransform transform = new AffineTransform();
+        ForwardExtentCopy copy = new ForwardExtentCopy(clipboard, clipboard.getRegion(), clipboard.getOrigin(),
+                extent, BukkitUtil.toVector(loc));
+
+        if (!transform.isIdentity()) copy.setTransform(transform);
+
+        copy.setSourceMask(new ExistingBlockMask(clipboard));
+        Operations.completeLegacy(copy);
+        extent.flushQueue();
+    }
+
+    /**
+     * Pastes the schematic on the current thread in chunk-sized slices, and stops between
+     * slices once the paste is cancelled
+     *
+     * @param loc       Location to paste in
+     * @param cancelled Returns true once the paste is cancelled
+     * @throws NoSchematicException  If the schematic does not exist
+     * @throws CancellationException If the paste is cancelled before it is done
+     */
+    protected void pasteNow(Location loc, BooleanSupplier cancelled) throws NoSchematicException {
+        World weWorld = new BukkitWorld(loc.getWorld());
+        Clipboard clipboard;
+        try {
+            clipboard = load(weWorld.getWorldData());
+        } catch (IOException e) {
+            throw new NoSchematicException(schematic.getName());
+        }
+        EditSession extent = WorldEdit.getInstance().getEditSessionFactory().getEditSession(weWorld, -1);
+        try {
+            runSliced(slices(clipboard, extent, loc), cancelled);
+        } finally {
+            extent.flushQueue();
+        }
+    }
+
+    @Override
+    public CompletableFuture<Void> paste(Location loc, long millisPerTick) throws NoSchematicException {
+        World weWorld = new BukkitWorld(loc.getWorld());
+        WorldData worldData = weWorld.getWorldData();
+        Clipboard clipboard;
+        try {
+            clipboard = load(worldData);
+        } catch (IOException e) {
+            throw new NoSchematicException(schematic.getName());
+        }
+        EditSession extent = WorldEdit.getInstance().getEditSessionFactory().getEditSession(weWorld, -1);
+        return pasteSliced(slices(clipboard, extent, loc), extent::flushQueue, extent::flushQueue, millisPerTick);
+    }
+
+    private static List<Runnable> slices(Clipboard clipboard, EditSession extent, Location loc) {
+        Vector to = BukkitUtil.toVector(loc);
+        Vector origin = clipboard.getOrigin();
+        Vector min = clipboard.getRegion().getMinimumPoint();
+        Vector max = clipboard.getRegion().getMaximumPoint();
+        List<Runnable> slices = new ArrayList<>();
+        for (int[] x : chunkSlices(min.getBlockX(), max.getBlockX(), to.getBlockX() - origin.getBlockX())) {
+            for (int[] z : chunkSlices(min.getBlockZ(), max.getBlockZ(), to.getBlockZ() - origin.getBlockZ())) {
+                Region slice = new CuboidRegion(new Vector(x[0], min.getBlockY(), z[0]), new Vector(x[1], max.getBlockY(), z[1]));
+                slices.add(() -> {
+                    ForwardExtentCopy copy = new ForwardExtentCopy(clipboard, slice, origin, extent, to);
+                    copy.setSourceMask(new ExistingBlockMask(clipboard));
+                    try {
+                        Operations.completeLegacy(copy);
+                    } catch (MaxChangedBlocksException e) {
+                        throw MinigamePlugin.sneakyThrow(e);
+                    }
+                });
+            }
+        }
+        return slices;
+    }
+
+    @Override
+    public void writeCompact() throws NoSchematicException, IOException {
+        Clipboard clipboard;
+        try {
+            clipboard = loadSchematic(LegacyWorldData.getInstance());
+        } catch (IOException e) {
+            throw new NoSchematicException(SchematicManager.getBaseName(schematic));
+        }
+        Region region = clipboard.getRegion();
+        Vector min = region.getMinimumPoint();
+        Vector size = region.getMaximumPoint().subtract(min).add(1, 1, 1);
+        Vector origin = clipboard.getOrigin();
+        CompactSchematic.Builder builder = new CompactSchematic.Builder(min.getBlockX(), min.getBlockY(), min.getBlockZ(),
+                size.getBlockX(), size.getBlockY(), size.getBlockZ(), AIR)
+                .origin(origin.getBlockX(), origin.getBlockY(), origin.getBlockZ());
+        for (BlockVector position : region) {
+            BaseBlock block = clipboard.getBlock(position);
+            if (block.getId() == 0) continue;
+            Vector relative = position.subtract(min);
+            builder.set(relative.getBlockX(), relative.getBlockY(), relative.getBlockZ(), block.getId() + ":" + block.getData());
+        }
+        builder.write(compact);
+        CLIPBOARDS.invalidate(compact);
+    }
+
+    /**
+     * Loads the schematic as a clipboard, or returns the cached one if the file was not modified.
+     * The compact schematic is preferred if it is up to date.
+     *
+     * @param worldData The world data to read with
+     * @return The clipboard of the schematic
+     */
+    private Clipboard load(WorldData worldData) throws IOException {
+        if (isCompactFresh()) {
+            try {
+                return CLIPBOARDS.get(compact, file -> fromCompact(CompactSchematic.read(file)), c -> c.getRegion().getArea());
+            } catch (IOException e) {
+                MinigamePlugin.getInstance().warn("Failed to read " + compact.getName() + ", falling back to " + schematic.getName() + ":");
+                e.printStackTrace();
+            }
+        }
+        return loadSchematic(worldData);
+    }
+
+    private Clipboard loadSchematic(WorldData worldData) throws IOException {
+        return CLIPBOARDS.get(schematic, file -> {
+            try (InputStream in = new BufferedInputStream(new FileInputStream(file))) {
+                return ClipboardFormat.SCHEMATIC.getReader(in).read(worldData);
+            }
+        }, c -> c.getRegion().getArea());
+    }
+
+    private static Clipboard fromCompact(CompactSchematic compact) throws IOException {
+        Vector min = new Vector(compact.getMinX(), compact.getMinY(), compact.getMinZ());
+        Vector max = min.add(compact.getWidth() - 1, compact.getHeight() - 1, compact.getLength() - 1);
+        BlockArrayClipboard clipboard = new BlockArrayClipboard(new CuboidRegion(min, max));
+        clipboard.setOrigin(new Vector(compact.getOriginX(), compact.getOriginY(), compact.getOriginZ()));
+        BaseBlock[] palette = new BaseBlock[compact.getPaletteSize()];
+        try {
+            for (int i = 0; i < palette.length; i++) {
+                String state = compact.getState(i);
+                int separator = state.indexOf(':');
+                palette[i] = new BaseBlock(Integer.parseInt(state.substring(0, separator)), Integer.parseInt(state.substring(separator + 1)));
+            }
+            for (int y = 0; y < compact.getHeight(); y++)
+                for (int z = 0; z < compact.getLength(); z++)
+                    for (int x = 0; x < compact.getWidth(); x++) {
+                        int index = compact.getBlock(x, y, z);
+                        if (index != 0) // the clipboard is already filled with air
+                            clipboard.setBlock(min.add(x, y, z), palette[index]);
+                    }
+        } catch (RuntimeException | WorldEditException e) {
+            throw new IOException(e);
+        }
+        return clipboard;
+    }
+
     @Override
     public SchematicManager newInstance(WorldEditPlugin plugin, String name, File directory) {
         return new WESchematicManager(plugin, name, directory);
@@ -18,15 +18,23 @@ package io.github.revxrsal.minigames.modern;
 import com.sk89q.worldedit.EditSession;
 import com.sk89q.worldedit.WorldEdit;
 import com.sk89q.worldedit.WorldEditException;
+import com.sk89q.worldedit.bukkit.BukkitAdapter;
 import com.sk89q.worldedit.bukkit.BukkitWorld;
 import com.sk89q.worldedit.bukkit.WorldEditPlugin;
+import com.sk89q.worldedit.extent.clipboard.BlockArrayClipboard;
 import com.sk89q.worldedit.extent.clipboard.Clipboard;
 import com.sk89q.worldedit.extent.clipboard.io.*;
+import com.sk89q.worldedit.function.operation.ForwardExtentCopy;
 import com.sk89q.worldedit.function.operation.Operation;
 import com.sk89q.worldedit.function.operation.Operations;
 import com.sk89q.worldedit.math.BlockVector3;
+import com.sk89q.worldedit.regions.CuboidRegion;
+import com.sk89q.worldedit.regions.Region;
 import com.sk89q.worldedit.session.ClipboardHolder;
+import com.sk89q.worldedit.world.block.BlockState;
+import io.github.revxrsal.minigames.MinigamePlugin;
 import io.github.revxrsal.minigames.util.Position;
+import io.github.revxrsal.minigames.worldedit.CompactSchematic;
 import io.github.revxrsal.minigames.worldedit.NoSchematicException;
 import io.github.revxrsal.minigames.worldedit.SchematicManager;
 import org.bukkit.Bukkit;
@@ -36,10 +44,16 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
+import java.util.function.BooleanSupplier;
 
 public class WESchematicManager extends SchematicManager {
 
+    private static final String AIR = "minecraft:air";
+
     public WESchematicManager() {
     }
 
@@ -48,49 +62,188 @@ public class WESchematicManager extends SchematicManager {
     }
 
     @Override
-    public void write(ClipboardHolder clipboard) {
+    public CompletableFuture<Void> write(ClipboardHolder clipboard) {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        try {
+            writeNow(clipboard);
+            future.complete(null);
+        } catch (IOException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    /**
+     * Writes the specified clipboard on the current thread
+     *
+     * @param clipboard Clipboard to write
+     * @throws IOException If writing fails
+     */
+    protected void writeNow(ClipboardHolder clipboard) throws IOException {
+        deleteCompact();
         try (ClipboardWriter writer = BuiltInClipboardFormat.SPONGE_SCHEMATIC.getWriter(new FileOutputStream(schematic))) {
             writer.write(clipboard.getClipboard());
-        } catch (IOException e) {
-            e.printStackTrace();
+        } finally {
+            CLIPBOARDS.invalidate(schematic);
         }
     }
 
     @Override
     public CompletableFuture<Void> paste(Location location) throws NoSchematicException {
         CompletableFuture<Void> future = new CompletableFuture<>();
+        try {
+            pasteNow(location);
+            future.complete(null);
+        } catch (WorldEditException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    /**
+     * Pastes the schematic on the current thread
+     *
+     * @param location Location to paste in
+     * @throws NoSchematicException If the schematic does not exist
+     * @throws WorldEditException   If the paste fails
+     */
+    protected void pasteNow(Location location) throws NoSchematicException, WorldEditException {
+        Clipboard clipboard = load();
+        if (clipboard == null) throw new NoSchematicException(SchematicManager.getBaseName(schematic));
         try (EditSession session = WorldEdit.getInstance().getEditSessionFactory().getEditSession(new BukkitWorld(location.getWorld()), -1)) {
-            Operation operation = new ClipboardHolder(load())
+            Operation operation = new ClipboardHolder(clipboard)
                     .createPaste(session)
                     .to(BlockVector3.at(location.getBlockX(), location.getBlockY(), location.getBlockZ()))
                     .ignoreAirBlocks(false)
                     .build();
             Operations.complete(operation);
             session.flushSession();
-            future.complete(null);
-        } catch (WorldEditException e) {
-            e.printStackTrace();
-        } catch (NullPointerException e) {
-            throw new NoSchematicException(SchematicManager.getBaseName(schematic));
         }
-        return future;
     }
 
     /**
-     * Loads the schematic as a clipboard
+     * Pastes the schematic on the current thread in chunk-sized slices, and stops between
+     * slices once the paste is cancelled
+     *
+     * @param location  Location to paste in
+     * @param cancelled Returns true once the paste is cancelled
+     * @throws NoSchematicException  If the schematic does not exist
+     * @throws CancellationException If the paste is cancelled before it is done
+     */
+    protected void pasteNow(Location location, BooleanSupplier cancelled) throws NoSchematicException {
+        Clipboard clipboard = load();
+        if (clipboard == null) throw new NoSchematicException(SchematicManager.getBaseName(schematic));
+        try (EditSession session = WorldEdit.getInstance().getEditSessionFactory().getEditSession(new BukkitWorld(location.getWorld()), -1)) {
+            runSliced(slices(clipboard, session, location), cancelled);
+            session.flushSession();
+        }
+    }
+
+    @Override
+    public CompletableFuture<Void> paste(Location location, long millisPerTick) throws NoSchematicException {
+        Clipboard clipboard = load();
+        if (clipboard == null) throw new NoSchematicException(SchematicManager.getBaseName(schematic));
+        EditSession session = WorldEdit.getInstance().getEditSessionFactory().getEditSession(new BukkitWorld(location.getWorld()), -1);
+        return pasteSliced(slices(clipboard, session, location), session::flushSession, session::close, millisPerTick);
+    }
+
+    private static List<Runnable> slices(Clipboard clipboard, EditSession session, Location location) {
+        BlockVector3 to = BlockVector3.at(location.getBlockX(), location.getBlockY(), location.getBlockZ());
+        BlockVector3 origin = clipboard.getOrigin();
+        BlockVector3 min = clipboard.getRegion().getMinimumPoint();
+        BlockVector3 max = clipboard.getRegion().getMaximumPoint();
+        List<Runnable> slices = new ArrayList<>();
+        for (int[] x : chunkSlices(min.getBlockX(), max.getBlockX(), to.getBlockX() - origin.getBlockX())) {
+            for (int[] z : chunkSlices(min.getBlockZ(), max.getBlockZ(), to.getBlockZ() - origin.getBlockZ())) {
+                Region slice = new CuboidRegion(BlockVector3.at(x[0], min.getBlockY(), z[0]), BlockVector3.at(x[1], max.getBlockY(), z[1]));
+                slices.add(() -> {
+                    try {
+                        Operations.complete(new ForwardExtentCopy(clipboard, slice, origin, session, to));
+                    } catch (WorldEditException e) {
+                        throw MinigamePlugin.sneakyThrow(e);
+                    }
+                });
+            }
+        }
+        return slices;
+    }
+
+    @Override
+    public void writeCompact() throws NoSchematicException, IOException {
+        Clipboard clipboard = loadSchematic();
+        if (clipboard == null) throw new NoSchematicException(SchematicManager.getBaseName(schematic));
+        Region region = clipboard.getRegion();
+        BlockVector3 min = region.getMinimumPoint();
+        BlockVector3 size = region.getMaximumPoint().subtract(min).add(1, 1, 1);
+        BlockVector3 origin = clipboard.getOrigin();
+        CompactSchematic.Builder builder = new CompactSchematic.Builder(min.getBlockX(), min.getBlockY(), min.getBlockZ(),
+                size.getBlockX(), size.getBlockY(), size.getBlockZ(), AIR)
+                .origin(origin.getBlockX(), origin.getBlockY(), origin.getBlockZ());
+        for (BlockVector3 position : region) {
+            BlockState block = clipboard.getBlock(position);
+            if (block.getBlockType().getMaterial().isAir()) continue;
+            BlockVector3 relative = position.subtract(min);
+            builder.set(relative.getBlockX(), relative.getBlockY(), relative.getBlockZ(), block.getAsString());
+        }
+        builder.write(compact);
+        CLIPBOARDS.invalidate(compact);
+    }
+
+    /**
+     * Loads the schematic as a clipboard, or returns the cached one if the file was not modified.
+     * The compact schematic is preferred if it is up to date.
      *
      * @return The clipboard of the schematic
      */
     Clipboard load() {
-        ClipboardFormat format = ClipboardFormats.findByFile(schematic);
-        try (ClipboardReader reader = format.getReader(new FileInputStream(schematic))) {
-            return reader.read();
+        if (isCompactFresh()) {
+            try {
+                return CLIPBOARDS.get(compact, file -> fromCompact(CompactSchematic.read(file)), clipboard -> clipboard.getRegion().getArea());
+            } catch (IOException e) {
+                MinigamePlugin.getInstance().warn("Failed to read " + compact.getName() + ", falling back to " + schematic.getName() + ":");
+                e.printStackTrace();
+            }
+        }
+        return loadSchematic();
+    }
+
+    private Clipboard loadSchematic() {
+        try {
+            return CLIPBOARDS.get(schematic, file -> {
+                ClipboardFormat format = ClipboardFormats.findByFile(file);
+                if (format == null) return null;
+                try (ClipboardReader reader = format.getReader(new FileInputStream(file))) {
+                    return reader.read();
+                }
+            }, clipboard -> clipboard.getRegion().getArea());
         } catch (IOException e) {
             e.printStackTrace();
             return null;
         }
     }
 
+    private static Clipboard fromCompact(CompactSchematic compact) throws IOException {
+        BlockVector3 min = BlockVector3.at(compact.getMinX(), compact.getMinY(), compact.getMinZ());
+        BlockVector3 max = min.add(compact.getWidth() - 1, compact.getHeight() - 1, compact.getLength() - 1);
+        BlockArrayClipboard clipboard = new BlockArrayClipboard(new CuboidRegion(min, max));
+        clipboard.setOrigin(BlockVector3.at(compact.getOriginX(), compact.getOriginY(), compact.getOriginZ()));
+        BlockState[] palette = new BlockState[compact.getPaletteSize()];
+        try {
+            for (int i = 0; i < palette.length; i++)
+                palette[i] = BukkitAdapter.adapt(Bukkit.createBlockData(compact.getState(i)));
+            for (int y = 0; y < compact.getHeight(); y++)
+                for (int z = 0; z < compact.getLength(); z++)
+                    for (int x = 0; x < compact.getWidth(); x++) {
+                        int index = compact.getBlock(x, y, z);
+                        if (index != 0) // the clipboard is already filled with air
+                            clipboard.setBlock(min.add(x, y, z), palette[index]);
+                    }
+        } catch (RuntimeException | WorldEditException e) { // including palette indices of a corrupt file
+            throw new IOException(e);
+        }
+        return clipboard;
+    }
+
     @Override
     protected SchematicManager newInstance(WorldEditPlugin plugin, String name, File directory) {
         return new WESchematicManager(plugin, name, directory);